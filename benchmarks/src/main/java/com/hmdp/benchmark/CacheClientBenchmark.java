@@ -0,0 +1,49 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.HotKeyCache;
+import com.hmdp.utils.JsonRedisSerializer;
+import com.hmdp.utils.RedisGetBatcher;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheClient的序列化开销：Redis为进程内替身，测得的时间只包含JSON序列化、反序列化和模板调用
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheClientBenchmark {
+
+    private static final String KEY_PREFIX = "cache:shop:list:";
+
+    private CacheClient cacheClient;
+    private List<Shop> shops;
+
+    @Setup
+    public void setup() {
+        StringRedisTemplate redis = new StubRedis().template();
+        cacheClient = new CacheClient(redis, new RedisGetBatcher(redis, false, 0, 1, 1, 0), new JsonRedisSerializer(),
+                new HotKeyCache(false, 0, 1, 1, 0, 0, 0));
+        shops = Shops.list(10);
+        cacheClient.set(KEY_PREFIX + 1, shops, 30L, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public void setList() {
+        cacheClient.set(KEY_PREFIX + 2, shops, 30L, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public List<Shop> queryListHit() {
+        return cacheClient.queryListWithPassThrough(KEY_PREFIX, 1L, Shop.class,
+                id -> shops, 30L, TimeUnit.MINUTES);
+    }
+}
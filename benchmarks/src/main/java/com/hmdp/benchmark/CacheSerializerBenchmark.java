@@ -0,0 +1,70 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSON;
+import cn.hutool.json.JSONArray;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.JsonRedisSerializer;
+import com.hmdp.utils.KryoRedisSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值的序列化方式对比：当前的JSON、Kryo、Kryo+LZ4(阈值0表示总是尝试压缩)。
+ * 数据为单个店铺(cache:shop:{id})和10个店铺的列表，序列化后的字节数在Setup中输出。
+ * JSON的decode包含转换为Shop，与CacheClient命中时的开销一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "kryo", "kryo-lz4"})
+    public String serializer;
+
+    @Param({"1", "10"})
+    public int shops;
+
+    private RedisSerializer<Object> redisSerializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        switch (serializer) {
+            case "json":
+                redisSerializer = new JsonRedisSerializer();
+                break;
+            case "kryo":
+                redisSerializer = new KryoRedisSerializer(0);
+                break;
+            default:
+                redisSerializer = new KryoRedisSerializer(1);
+        }
+        value = shops == 1 ? Shops.list(1).get(0) : Shops.list(shops);
+        bytes = redisSerializer.serialize(value);
+        System.out.println();
+        System.out.println("payload " + serializer + " shops=" + shops + ": " + bytes.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        Object decoded = redisSerializer.deserialize(bytes);
+        if (decoded instanceof JSONArray) {
+            return ((JSONArray) decoded).toList(Shop.class);
+        }
+        if (decoded instanceof JSON) {
+            return ((JSON) decoded).toBean(Shop.class);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,73 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.service.impl.ImageServiceImpl;
+import com.hmdp.utils.LocalImageStorage;
+import com.hmdp.utils.UserHolder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传图片的命名：ImageServiceImpl.uploadBlogImage上传1MB的图片(识别类型、写入暂存区的同时计算SHA-256、发布)，
+ * 以及生成文件名。图片内容不变，第一次之后走相同图片已存在、丢弃暂存文件的路径；Redis为进程内替身
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageFileNameBenchmark {
+
+    private Path dir;
+    private ImageServiceImpl imageService;
+    private MockMultipartFile image;
+    private String sha256;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hmdp-benchmark");
+        imageService = new ImageServiceImpl();
+        ReflectionTestUtils.setField(imageService, "imageStorage",
+                new LocalImageStorage(dir.resolve("imgs").toString(), ""));
+        ReflectionTestUtils.setField(imageService, "stringRedisTemplate", new StubRedis().template());
+        //1.JPEG文件头加随机内容
+        byte[] bytes = new byte[1 << 20];
+        new Random(1).nextBytes(bytes);
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        bytes[2] = (byte) 0xFF;
+        image = new MockMultipartFile("file", "a.jpg", "image/jpeg", bytes);
+        sha256 = DigestUtil.sha256Hex(bytes);
+        UserDTO user = new UserDTO();
+        user.setId(1L);
+        UserHolder.saveUser(user);
+    }
+
+    @TearDown
+    public void tearDown() {
+        UserHolder.removeUser();
+        imageService.destroy();
+        FileUtil.del(dir.toFile());
+    }
+
+    @Benchmark
+    public Result upload() {
+        return imageService.uploadBlogImage(image);
+    }
+
+    @Benchmark
+    public String createFileName() {
+        return ImageServiceImpl.createFileName(sha256, "jpg");
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.PasswordEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码登录时的密码比对
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    private String encodedPassword;
+
+    @Setup
+    public void setup() {
+        encodedPassword = PasswordEncoder.encode("123321");
+    }
+
+    @Benchmark
+    public Boolean matches() {
+        return PasswordEncoder.matches(encodedPassword, "123321");
+    }
+
+    @Benchmark
+    public Boolean mismatches() {
+        return PasswordEncoder.matches(encodedPassword, "654321");
+    }
+}
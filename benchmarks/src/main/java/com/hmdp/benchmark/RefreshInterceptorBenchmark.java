@@ -0,0 +1,68 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.RefreshInterceptor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+
+/**
+ * 每个请求都会经过的RefreshInterceptor：读取token、查询登录用户的Hash、转换为UserDTO并刷新有效期
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefreshInterceptorBenchmark {
+
+    private RefreshInterceptor interceptor;
+    private MockHttpServletRequest loggedIn;
+    private MockHttpServletRequest expired;
+    private MockHttpServletRequest anonymous;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Setup
+    public void setup() {
+        StringRedisTemplate redis = new StubRedis().template();
+        Map<String, String> user = new HashMap<>();
+        user.put("id", "1010");
+        user.put("nickName", "user_slxaxy2au9f3tanffaxr");
+        user.put("icon", "/imgs/icons/kkjtbcr.jpg");
+        redis.opsForHash().putAll(LOGIN_USER_KEY + "token", user);
+        interceptor = new RefreshInterceptor(redis);
+        loggedIn = new MockHttpServletRequest("GET", "/blog/of/me");
+        loggedIn.addHeader("authorization", "token");
+        expired = new MockHttpServletRequest("GET", "/blog/of/me");
+        expired.addHeader("authorization", "expired");
+        anonymous = new MockHttpServletRequest("GET", "/shop/1");
+    }
+
+    @Benchmark
+    public boolean loggedIn() throws Exception {
+        return handle(loggedIn);
+    }
+
+    @Benchmark
+    public boolean expiredToken() throws Exception {
+        return handle(expired);
+    }
+
+    @Benchmark
+    public boolean anonymous() throws Exception {
+        return handle(anonymous);
+    }
+
+    private boolean handle(MockHttpServletRequest request) throws Exception {
+        boolean result = interceptor.preHandle(request, response, null);
+        interceptor.postHandle(request, response, null, null);
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.RegexPatterns;
+import com.hmdp.utils.RegexUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 登录流程中的手机号校验：String.matches每次都编译正则，与预编译的Pattern对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegexUtilsBenchmark {
+
+    private static final Pattern PHONE = Pattern.compile(RegexPatterns.PHONE_REGEX);
+
+    @Param({"13686869696", "1368686969x"})
+    private String phone;
+
+    @Benchmark
+    public boolean phoneInvalid() {
+        return RegexUtils.isPhoneInvalid(phone);
+    }
+
+    @Benchmark
+    public boolean phoneInvalidPrecompiled() {
+        return !PHONE.matcher(phone).matches();
+    }
+}
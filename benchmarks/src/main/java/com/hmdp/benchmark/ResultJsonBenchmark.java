@@ -0,0 +1,51 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.Result;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应体Result的JSON序列化：Spring MVC使用的Jackson(与application.yaml的配置一致)与hutool JSONUtil对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Result empty;
+    private Result shopPage;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .build();
+        empty = Result.ok();
+        shopPage = Result.ok(Shops.list(10));
+    }
+
+    @Benchmark
+    public byte[] emptyJackson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(empty);
+    }
+
+    @Benchmark
+    public byte[] shopPageJackson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(shopPage);
+    }
+
+    @Benchmark
+    public String shopPageHutool() {
+        return JSONUtil.toJsonStr(shopPage);
+    }
+}
@@ -0,0 +1,40 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的店铺数据，字段长度接近db/hmdp.sql中的真实数据
+ */
+final class Shops {
+
+    private Shops() {
+    }
+
+    static List<Shop> list(int size) {
+        List<Shop> shops = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            Shop shop = new Shop();
+            shop.setId(i);
+            shop.setName("103茶餐厅" + i);
+            shop.setTypeId(1L);
+            shop.setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg");
+            shop.setArea("大关");
+            shop.setAddress("金华路锦昌文华苑29号");
+            shop.setX(120.149192);
+            shop.setY(30.316078);
+            shop.setAvgPrice(80L);
+            shop.setSold(4215);
+            shop.setComments(3035);
+            shop.setScore(37);
+            shop.setOpenHours("10:00-22:00");
+            shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+            shop.setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+            shops.add(shop);
+        }
+        return shops;
+    }
+}
@@ -0,0 +1,129 @@
+package com.hmdp.benchmark;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的Redis替身，只实现基准测试用到的命令，不发起网络请求。
+ * 通过JDK动态代理实现RedisConnection，StringRedisTemplate的序列化和连接管理仍按真实流程执行
+ */
+public class StubRedis {
+
+    private final Map<String, byte[]> strings = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+    /**
+     * 开启pipeline后命令的结果，closePipeline时一起返回
+     */
+    private List<Object> pipeline;
+
+    /**
+     * 连接到本替身的StringRedisTemplate
+     */
+    public StringRedisTemplate template() {
+        RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> execute(method.getName(), args));
+        RedisConnectionFactory factory = (RedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnectionFactory.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getConnection":
+                            return connection;
+                        case "getConvertPipelineAndTxResults":
+                            return true;
+                        case "translateExceptionIfPossible":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new StringRedisTemplate(factory);
+    }
+
+    private Object execute(String command, Object[] args) {
+        switch (command) {
+            case "openPipeline":
+                pipeline = new ArrayList<>();
+                return null;
+            case "closePipeline":
+                List<Object> results = pipeline;
+                pipeline = null;
+                return results;
+            case "isPipelined":
+                return pipeline != null;
+            case "isQueueing":
+            case "isClosed":
+                return false;
+            case "close":
+                return null;
+            default:
+                Object result = executeCommand(command, args);
+                if (pipeline != null) {
+                    pipeline.add(result);
+                    return null;
+                }
+                return result;
+        }
+    }
+
+    private Object executeCommand(String command, Object[] args) {
+        switch (command) {
+            case "get":
+                return strings.get(key(args[0]));
+            case "set":
+                strings.put(key(args[0]), (byte[]) args[1]);
+                return true;
+            case "setEx":
+            case "pSetEx":
+                strings.put(key(args[0]), (byte[]) args[2]);
+                return true;
+            case "mGet":
+                List<byte[]> values = new ArrayList<>();
+                for (byte[] key : (byte[][]) args[0]) {
+                    values.add(strings.get(key(key)));
+                }
+                return values;
+            case "hGetAll":
+                Map<byte[], byte[]> entries = new LinkedHashMap<>();
+                hashes.getOrDefault(key(args[0]), Collections.emptyMap())
+                        .forEach((field, value) -> entries.put(field.getBytes(StandardCharsets.UTF_8), value));
+                return entries;
+            case "hMSet":
+                @SuppressWarnings("unchecked")
+                Map<byte[], byte[]> hash = (Map<byte[], byte[]>) args[1];
+                Map<String, byte[]> target = hashes.computeIfAbsent(key(args[0]), k -> new ConcurrentHashMap<>());
+                hash.forEach((field, value) -> target.put(key(field), value));
+                return null;
+            case "hIncrBy":
+                Map<String, byte[]> counters = hashes.computeIfAbsent(key(args[0]), k -> new ConcurrentHashMap<>());
+                long count = (Long) args[2];
+                byte[] old = counters.get(key(args[1]));
+                if (old != null) {
+                    count += Long.parseLong(key(old));
+                }
+                counters.put(key(args[1]), Long.toString(count).getBytes(StandardCharsets.UTF_8));
+                return count;
+            case "expire":
+            case "pExpire":
+                return strings.containsKey(key(args[0])) || hashes.containsKey(key(args[0]));
+            case "del":
+                long deleted = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    if (strings.remove(key(key)) != null | hashes.remove(key(key)) != null) {
+                        deleted++;
+                    }
+                }
+                return deleted;
+            default:
+                throw new UnsupportedOperationException(command);
+        }
+    }
+
+    private static String key(Object raw) {
+        return new String((byte[]) raw, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,67 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.User;
+import com.hmdp.utils.UserDtoUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserDTO与Redis Hash之间的转换：生产代码UserDtoUtils(登录写入、刷新token读取)与其他实现对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDtoBenchmark {
+
+    private User user;
+    private UserDTO userDTO;
+    private Map<String, String> userMap;
+
+    @Setup
+    public void setup() {
+        user = new User();
+        user.setId(1010L);
+        user.setPhone("13686869696");
+        user.setNickName("user_slxaxy2au9f3tanffaxr");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        userDTO = UserDtoUtils.fromUser(user);
+        userMap = UserDtoUtils.toHash(userDTO);
+    }
+
+    /**
+     * 登录：User -> UserDTO -> Hash
+     */
+    @Benchmark
+    public Map<String, String> login() {
+        return UserDtoUtils.toHash(UserDtoUtils.fromUser(user));
+    }
+
+    /**
+     * 刷新token：Hash -> UserDTO
+     */
+    @Benchmark
+    public UserDTO refresh() {
+        return UserDtoUtils.fromHash(userMap);
+    }
+
+    @Benchmark
+    public Map<String, Object> toHashBeanUtil() {
+        return BeanUtil.beanToMap(userDTO, new HashMap<>(), CopyOptions.create()
+                .setIgnoreNullValue(true)
+                .setFieldValueEditor((name, value) -> value.toString()));
+    }
+
+    @Benchmark
+    public UserDTO fromHashBeanUtil() {
+        return BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
+    }
+}
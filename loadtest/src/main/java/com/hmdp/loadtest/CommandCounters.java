@@ -0,0 +1,92 @@
+package com.hmdp.loadtest;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计应用发出的Redis命令数和SQL语句数
+ */
+public class CommandCounters {
+
+    /**
+     * 不是Redis命令的连接方法
+     */
+    private static final Set<String> NON_COMMANDS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "isPipelined", "isQueueing", "isSubscribed", "openPipeline", "closePipeline",
+            "getNativeConnection", "getSubscription", "getSentinelConnection", "toString", "hashCode", "equals"));
+
+    private final LongAdder redisCommands = new LongAdder();
+    private final LongAdder sqlStatements = new LongAdder();
+
+    public long redisCommands() {
+        return redisCommands.sum();
+    }
+
+    public long sqlStatements() {
+        return sqlStatements.sum();
+    }
+
+    public void reset() {
+        redisCommands.reset();
+        sqlStatements.reset();
+    }
+
+    /**
+     * 包装RedisConnectionFactory，统计取得的连接上执行的命令，pipeline中的命令逐条计数
+     */
+    public BeanPostProcessor redisCounter() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof RedisConnectionFactory)) {
+                    return bean;
+                }
+                ProxyFactory factory = new ProxyFactory(bean);
+                factory.addAdvice((MethodInterceptor) invocation -> {
+                    Object result = invocation.proceed();
+                    return result instanceof RedisConnection ? countCommands(result) : result;
+                });
+                return factory.getProxy();
+            }
+        };
+    }
+
+    private Object countCommands(Object connection) {
+        ProxyFactory factory = new ProxyFactory(connection);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            String name = invocation.getMethod().getName();
+            if (!NON_COMMANDS.contains(name) && !name.endsWith("Commands")) {
+                redisCommands.increment();
+            }
+            return invocation.proceed();
+        });
+        return factory.getProxy();
+    }
+
+    /**
+     * MyBatis插件，每准备一条JDBC语句计数一次，分页的COUNT查询也会计入
+     */
+    public Interceptor sqlCounter() {
+        return new SqlCounter();
+    }
+
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    private class SqlCounter implements Interceptor {
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            sqlStatements.increment();
+            return invocation.proceed();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于HttpURLConnection的简单客户端，JDK默认复用keep-alive连接
+ */
+public class HttpClient {
+
+    private final String baseUrl;
+
+    public HttpClient(int port) {
+        this.baseUrl = "http://127.0.0.1:" + port;
+    }
+
+    public Result get(String path, String token) throws IOException {
+        return send("GET", path, null, token);
+    }
+
+    public Result post(String path, Object body, String token) throws IOException {
+        return send("POST", path, body == null ? null : JSONUtil.toJsonStr(body), token);
+    }
+
+    private Result send(String method, String path, String body, String token) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (token != null) {
+            connection.setRequestProperty("authorization", token);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        // 读完响应体,连接才能被复用
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String json = in == null ? "" : StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        if (in != null) {
+            in.close();
+        }
+        if (status != 200) {
+            throw new IOException(method + " " + path + " 返回" + status + "：" + json);
+        }
+        return JSONUtil.toBean(json, Result.class);
+    }
+}
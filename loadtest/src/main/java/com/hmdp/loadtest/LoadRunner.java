@@ -0,0 +1,114 @@
+package com.hmdp.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用固定数量的线程执行场景，记录每个请求的耗时
+ */
+@Slf4j
+public class LoadRunner {
+
+    private final LoadTestContext context;
+    private final CommandCounters counters;
+    private final int threads;
+
+    public LoadRunner(LoadTestContext context, CommandCounters counters, int threads) {
+        this.context = context;
+        this.counters = counters;
+        this.threads = threads;
+    }
+
+    public Report run(Scenario scenario, int warmup, int requests) throws Exception {
+        //1.准备数据并预热,预热的请求不计入统计
+        scenario.prepare(context, warmup + requests);
+        execute(scenario, 0, warmup, new long[warmup], new LongAdder(), new LongAdder());
+        //2.正式压测
+        long[] latencies = new long[requests];
+        LongAdder failures = new LongAdder();
+        LongAdder errors = new LongAdder();
+        counters.reset();
+        long start = System.nanoTime();
+        execute(scenario, warmup, requests, latencies, failures, errors);
+        long elapsed = System.nanoTime() - start;
+        return new Report(scenario.name(), requests, failures.sum(), errors.sum(), elapsed, latencies,
+                counters.redisCommands(), counters.sqlStatements());
+    }
+
+    private void execute(Scenario scenario, int offset, int requests, long[] latencies,
+                         LongAdder failures, LongAdder errors) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long begin = System.nanoTime();
+                    try {
+                        if (!scenario.execute(context, offset + i)) {
+                            failures.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                        log.debug("请求失败", e);
+                    }
+                    latencies[i] = System.nanoTime() - begin;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    /**
+     * 一个场景的压测结果
+     */
+    public static class Report {
+        private final String scenario;
+        private final int requests;
+        private final long failures;
+        private final long errors;
+        private final long elapsedNanos;
+        private final long[] latencies;
+        private final long redisCommands;
+        private final long sqlStatements;
+
+        Report(String scenario, int requests, long failures, long errors, long elapsedNanos, long[] latencies,
+               long redisCommands, long sqlStatements) {
+            this.scenario = scenario;
+            this.requests = requests;
+            this.failures = failures;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.redisCommands = redisCommands;
+            this.sqlStatements = sqlStatements;
+        }
+
+        static String header() {
+            return String.format("%-12s %9s %8s %8s %10s %9s %9s %9s %9s %11s %9s",
+                    "scenario", "requests", "failed", "errors", "req/s",
+                    "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "redis/req", "sql/req");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %9d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %11.2f %9.2f",
+                    scenario, requests, failures, errors, requests * 1e9 / elapsedNanos,
+                    percentile(0.50), percentile(0.99), percentile(0.999), latencies[latencies.length - 1] / 1e6,
+                    (double) redisCommands / requests, (double) sqlStatements / requests);
+        }
+
+        private double percentile(double p) {
+            int index = (int) Math.ceil(p * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.hmdp.loadtest;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.hmdp.H2Schema;
+import com.hmdp.HmDianPingApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.invoke.SerializedLambda;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 进程内的端到端压测：启动jedis-mock(Redis协议)和H2(MySQL模式，导入db/hmdp.sql)，
+ * 用它们启动应用，再通过HTTP执行压测场景。
+ * <p>
+ * 参数(系统属性)：scenarios 逗号分隔的场景，threads 并发线程数，requests 每个场景的请求数，warmup 预热请求数，
+ * stock/users 秒杀场景的库存和用户数。
+ * <p>
+ * 结果只用于同一环境下优化前后的对比：Redis和数据库都在进程内，绝对延迟比生产环境低；
+ * Redis命令数和SQL数按请求平均，包含后台定时任务(计数器写回等)的少量命令
+ */
+@Slf4j
+public class LoadTestApplication {
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            checkLambdaAccess();
+            run(args);
+        } catch (Throwable e) {
+            log.error("压测失败", e);
+            status = 1;
+        }
+        // jedis-mock的连接线程不是守护线程,主动退出
+        System.exit(status);
+    }
+
+    /**
+     * MyBatis-Plus的Lambda条件需要反射SerializedLambda，JDK 9及以上需要开放java.lang.invoke
+     */
+    private static void checkLambdaAccess() throws NoSuchFieldException {
+        try {
+            SerializedLambda.class.getDeclaredField("capturingClass").setAccessible(true);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("JDK 9及以上请设置环境变量 "
+                    + "JDK_JAVA_OPTIONS=--add-opens=java.base/java.lang.invoke=ALL-UNNAMED 后重新执行", e);
+        }
+    }
+
+    private static void run(String[] args) throws Exception {
+        List<String> scenarios = new ArrayList<>();
+        for (String name : System.getProperty("scenarios", "hot-shop,hot-blog,login,flash-sale").split(",")) {
+            scenarios.add(name.trim());
+        }
+        int threads = Integer.getInteger("threads", 32);
+        int requests = Integer.getInteger("requests", 20000);
+        int warmup = Integer.getInteger("warmup", 2000);
+
+        //1.启动Redis替身
+        RedisServer redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        //2.创建H2数据库并导入hmdp.sql,应用启动时由Flyway执行后续的迁移脚本
+        String url = String.format(H2Schema.URL_TEMPLATE, "loadtest");
+        Connection keepAlive = DriverManager.getConnection(url, "sa", "");
+        H2Schema.load(keepAlive);
+        //3.启动应用,统计Redis命令和SQL语句
+        CommandCounters counters = new CommandCounters();
+        // 以命令行参数传入,优先级高于application.yaml
+        String[] properties = {
+                "server.port=0",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.datasource.url=" + url,
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                // 只在reactive环境中使用
+                "spring.r2dbc.url=r2dbc:h2:mem:///loadtest?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "spring.r2dbc.username=sa",
+                "spring.r2dbc.password=",
+                "spring.redis.host=127.0.0.1",
+                "spring.redis.port=" + redisServer.getBindPort(),
+                "spring.redis.password=",
+                "spring.redis.lettuce.pool.max-active=64",
+                "spring.redis.lettuce.pool.max-idle=64",
+                "hmdp.upload.dir=" + Files.createTempDirectory("hmdp-upload"),
+                "logging.level.com.hmdp=info"};
+        List<String> appArgs = new ArrayList<>();
+        for (String property : properties) {
+            appArgs.add("--" + property);
+        }
+        appArgs.addAll(Arrays.asList(args));
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(HmDianPingApplication.class)
+                .initializers(context -> context.addBeanFactoryPostProcessor(beanFactory -> {
+                    beanFactory.addBeanPostProcessor(counters.redisCounter());
+                    beanFactory.registerSingleton("sqlCounter", counters.sqlCounter());
+                }))
+                .run(appArgs.toArray(new String[0]));
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            LoadTestContext context = new LoadTestContext(new HttpClient(port), app.getBean(StringRedisTemplate.class));
+            LoadRunner runner = new LoadRunner(context, counters, threads);
+            //4.依次执行场景
+            List<LoadRunner.Report> reports = new ArrayList<>();
+            for (String name : scenarios) {
+                log.info("开始压测{}，线程数{}，请求数{}", name, threads, requests);
+                reports.add(runner.run(Scenarios.of(name), warmup, requests));
+            }
+            System.out.println(LoadRunner.Report.header());
+            reports.forEach(System.out::println);
+        } finally {
+            app.close();
+            redisServer.stop();
+            keepAlive.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.loadtest;
+
+import com.hmdp.dto.LoginFormDTO;
+import com.hmdp.dto.Result;
+import lombok.Getter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+
+/**
+ * 场景可以使用的客户端和应用内的组件
+ */
+@Getter
+public class LoadTestContext {
+
+    private final HttpClient http;
+    private final StringRedisTemplate redis;
+
+    public LoadTestContext(HttpClient http, StringRedisTemplate redis) {
+        this.http = http;
+        this.redis = redis;
+    }
+
+    /**
+     * 第i个压测用户的手机号
+     */
+    public static String phone(int i) {
+        return String.format("138%08d", i);
+    }
+
+    /**
+     * 直接在Redis中写入验证码，跳过发送短信
+     */
+    public LoginFormDTO loginForm(String phone) {
+        String code = "123456";
+        redis.opsForValue().set(LOGIN_CODE_KEY + phone, code, 30, TimeUnit.MINUTES);
+        LoginFormDTO form = new LoginFormDTO();
+        form.setPhone(phone);
+        form.setCode(code);
+        return form;
+    }
+
+    /**
+     * 登录并返回token
+     */
+    public String login(String phone) throws IOException {
+        Result result = http.post("/user/login", loginForm(phone), null);
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            throw new IllegalStateException("登录失败：" + result.getErrorMsg());
+        }
+        return result.getData().toString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.hmdp.loadtest;
+
+/**
+ * 压测场景
+ */
+public interface Scenario {
+
+    String name();
+
+    /**
+     * 准备数据，不计入统计
+     * @param requests 本次压测的请求数(含预热)
+     */
+    void prepare(LoadTestContext context, int requests) throws Exception;
+
+    /**
+     * 发送第i个请求
+     * @return 业务是否成功(Result.success)，HTTP错误和异常直接抛出
+     */
+    boolean execute(LoadTestContext context, int i) throws Exception;
+}
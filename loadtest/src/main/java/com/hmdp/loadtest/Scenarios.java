@@ -0,0 +1,147 @@
+package com.hmdp.loadtest;
+
+import com.hmdp.dto.LoginFormDTO;
+import com.hmdp.dto.Result;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 内置的压测场景
+ */
+public final class Scenarios {
+
+    private Scenarios() {
+    }
+
+    public static Scenario of(String name) {
+        switch (name) {
+            case "hot-shop":
+                return new HotShop();
+            case "hot-blog":
+                return new HotBlog();
+            case "login":
+                return new LoginStorm();
+            case "flash-sale":
+                return new FlashSale(Integer.getInteger("stock", 100), Integer.getInteger("users", 1000));
+            default:
+                throw new IllegalArgumentException("未知的场景：" + name);
+        }
+    }
+
+    /**
+     * 热点店铺：80%的请求落在前3个店铺上，其余分散在全部14个店铺
+     */
+    static class HotShop implements Scenario {
+        @Override
+        public String name() {
+            return "hot-shop";
+        }
+
+        @Override
+        public void prepare(LoadTestContext context, int requests) {
+        }
+
+        @Override
+        public boolean execute(LoadTestContext context, int i) throws Exception {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int id = random.nextInt(10) < 8 ? 1 + random.nextInt(3) : 1 + random.nextInt(14);
+            return context.getHttp().get("/shop/" + id, null).getSuccess();
+        }
+    }
+
+    /**
+     * 热门博文：90%请求第一页
+     */
+    static class HotBlog implements Scenario {
+        @Override
+        public String name() {
+            return "hot-blog";
+        }
+
+        @Override
+        public void prepare(LoadTestContext context, int requests) {
+        }
+
+        @Override
+        public boolean execute(LoadTestContext context, int i) throws Exception {
+            int current = ThreadLocalRandom.current().nextInt(10) < 9 ? 1 : 2;
+            return context.getHttp().get("/blog/hot?current=" + current, null).getSuccess();
+        }
+    }
+
+    /**
+     * 登录风暴：每个请求是一个新手机号的首次登录，包含创建用户
+     */
+    static class LoginStorm implements Scenario {
+        private final List<LoginFormDTO> forms = new ArrayList<>();
+
+        @Override
+        public String name() {
+            return "login";
+        }
+
+        @Override
+        public void prepare(LoadTestContext context, int requests) {
+            for (int i = 0; i < requests; i++) {
+                forms.add(context.loginForm(LoadTestContext.phone(i)));
+            }
+        }
+
+        @Override
+        public boolean execute(LoadTestContext context, int i) throws Exception {
+            return context.getHttp().post("/user/login", forms.get(i), null).getSuccess();
+        }
+    }
+
+    /**
+     * 秒杀：新建一张秒杀券，固定数量的用户轮流抢购，库存远小于请求数
+     */
+    static class FlashSale implements Scenario {
+        private final int stock;
+        private final int users;
+        private final List<String> tokens = new ArrayList<>();
+        private long voucherId;
+
+        FlashSale(int stock, int users) {
+            this.stock = stock;
+            this.users = users;
+        }
+
+        @Override
+        public String name() {
+            return "flash-sale";
+        }
+
+        @Override
+        public void prepare(LoadTestContext context, int requests) throws Exception {
+            //1.新建秒杀券
+            // 时间按Jackson默认的ISO格式传递
+            Map<String, Object> voucher = new HashMap<>();
+            voucher.put("shopId", 1L);
+            voucher.put("title", "压测秒杀券");
+            voucher.put("payValue", 8000L);
+            voucher.put("actualValue", 10000L);
+            voucher.put("type", 1);
+            voucher.put("stock", stock);
+            voucher.put("beginTime", LocalDateTime.now().minusDays(1).withNano(0).toString());
+            voucher.put("endTime", LocalDateTime.now().plusDays(1).withNano(0).toString());
+            Result result = context.getHttp().post("/voucher/seckill", voucher, null);
+            voucherId = Long.parseLong(result.getData().toString());
+            //2.登录抢购用户,手机号与登录场景错开
+            for (int i = 0; i < users; i++) {
+                tokens.add(context.login(LoadTestContext.phone(50_000_000 + i)));
+            }
+        }
+
+        @Override
+        public boolean execute(LoadTestContext context, int i) throws Exception {
+            String token = tokens.get(i % tokens.size());
+            return context.getHttp().post("/voucher-order/seckill/" + voucherId, null, token).getSuccess();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.AdminAuthFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 管理接口的鉴权(hmdp.admin.token)。actuator的接口不经过MVC拦截器，用过滤器保护；
+ * /admin下的接口由商户后台、支付渠道的回调调用，同样只校验管理员token，不需要用户登录；
+ * reactive环境在ReactiveConfig中用同样的路径注册WebFilter
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdminAuthConfig {
+
+    /**
+     * 需要管理员token的路径，指标中带有接口、SQL语句和Redis key前缀，同样不公开
+     */
+    static final String[] ADMIN_PATHS = {"/actuator/prometheus/**", "/actuator/slowlog/**", "/actuator/hotkeys/**", "/admin/**"};
+
+    @Bean
+    public FilterRegistrationBean<AdminAuthFilter> adminAuthFilter(@Value("${hmdp.admin.token:}") String token) {
+        FilterRegistrationBean<AdminAuthFilter> registration =
+                new FilterRegistrationBean<>(new AdminAuthFilter(token, ADMIN_PATHS));
+        registration.addUrlPatterns("/*");
+        // 在响应缓存等其他过滤器之前
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,54 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.OffloadingHandlerAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * 异步执行模式(hmdp.async.enabled=true)：控制器方法在弹性的业务线程池上执行，Tomcat线程只负责收发请求。
+ * 业务线程池没有排队，空闲线程60秒后回收，线程数达到上限时拒绝请求，并发上限由后端(Redis、MySQL连接池)决定
+ */
+@Configuration
+@ConditionalOnProperty(name = "hmdp.async.enabled", havingValue = "true")
+public class AsyncMvcConfig implements WebMvcConfigurer {
+
+    @Value("${hmdp.async.max-threads:1000}")
+    private int maxThreads;
+
+    @Value("${hmdp.async.timeout-ms:30000}")
+    private long timeoutMillis;
+
+    @Bean
+    public ThreadPoolTaskExecutor handlerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+        executor.setMaxPoolSize(maxThreads);
+        executor.setQueueCapacity(0);
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix("handler-");
+        return executor;
+    }
+
+    @Bean
+    public WebMvcRegistrations offloadingRegistrations() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new OffloadingHandlerAdapter();
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(handlerExecutor());
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+}
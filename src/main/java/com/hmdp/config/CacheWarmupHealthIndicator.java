@@ -0,0 +1,30 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.CacheWarmer;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 缓存预热的进度：GET /actuator/health/readiness 包含该项，预热结束前返回OUT_OF_SERVICE(503)
+ */
+@Component
+public class CacheWarmupHealthIndicator extends AbstractHealthIndicator {
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (cacheWarmer.isFinished()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetail("state", cacheWarmer.getState())
+                .withDetail("elapsedMs", cacheWarmer.getElapsedMillis())
+                .withDetail("progress", cacheWarmer.getProgress());
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmdp.config;
+
+import com.hmdp.entity.Voucher;
+import com.hmdp.mapper.VoucherMapper;
+import com.hmdp.utils.BinlogChangeEventSource;
+import com.hmdp.utils.CacheChangeHandler;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.ChangeEventSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 通过MySQL binlog同步缓存(hmdp.cdc.enabled=true)，后台SQL等应用之外的修改也能让缓存失效。
+ * 应用内的修改仍然在写入后立即删除缓存，binlog到达后再删除一次
+ */
+@Configuration
+@ConditionalOnProperty(name = "hmdp.cdc.enabled", havingValue = "true")
+public class CdcConfig {
+
+    /**
+     * 由cacheChangeHandler启动和停止
+     */
+    @Bean
+    public ChangeEventSource binlogChangeEventSource(
+            DataSource dataSource,
+            @Value("${hmdp.cdc.host:127.0.0.1}") String host,
+            @Value("${hmdp.cdc.port:3306}") int port,
+            @Value("${hmdp.cdc.username:${spring.datasource.username}}") String username,
+            @Value("${hmdp.cdc.password:${spring.datasource.password}}") String password,
+            @Value("${hmdp.cdc.server-id}") long serverId,
+            @Value("${hmdp.cdc.database:hmdp}") String database,
+            @Value("${hmdp.cdc.connect-timeout-ms:5000}") long connectTimeoutMillis) {
+        return new BinlogChangeEventSource(host, port, username, password, serverId, database,
+                CacheChangeHandler.TABLES, dataSource, connectTimeoutMillis);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CacheChangeHandler cacheChangeHandler(ChangeEventSource changeEventSource, CacheInvalidator cacheInvalidator,
+                                                 VoucherMapper voucherMapper,
+                                                 @Value("${hmdp.cdc.flush-millis:100}") long flushMillis) {
+        return new CacheChangeHandler(changeEventSource, cacheInvalidator, voucherId -> {
+            Voucher voucher = voucherMapper.selectById(voucherId);
+            return voucher == null ? null : voucher.getShopId();
+        }, flushMillis);
+    }
+}
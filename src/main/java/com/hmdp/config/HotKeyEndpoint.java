@@ -0,0 +1,26 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.HotKeyCache;
+import com.hmdp.utils.HotKeyDetector;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * 本节点当前的热点key：GET /actuator/hotkeys，需要管理员token(AdminAuthConfig)
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+
+    @Resource
+    private HotKeyCache hotKeyCache;
+
+    @ReadOperation
+    public List<HotKeyDetector.HotKey> hotKeys() {
+        return hotKeyCache.hotKeys();
+    }
+}
@@ -0,0 +1,114 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.RedisCommandListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标配置，通过/actuator/prometheus暴露。
+ * 接口耗时使用Spring Boot的http.server.requests，额外加上handler标签(控制器方法)；
+ * Hikari连接池指标由Spring Boot自动注册
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final String CONTROLLER_PACKAGE = "com.hmdp.controller";
+
+    /**
+     * 给http.server.requests加上处理请求的控制器方法，例如ShopController#queryShopById
+     */
+    @Bean
+    public WebMvcTagsContributor handlerTagsContributor() {
+        return new WebMvcTagsContributor() {
+            @Override
+            public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response,
+                                         Object handler, Throwable exception) {
+                return Tags.of("handler", handlerName(handler));
+            }
+
+            @Override
+            public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    private static String handlerName(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            if (method.getBeanType().getName().startsWith(CONTROLLER_PACKAGE)) {
+                return method.getBeanType().getSimpleName() + "#" + method.getMethod().getName();
+            }
+        }
+        return "none";
+    }
+
+    /**
+     * Redis命令的次数和耗时，指标为redis.commands，按命令和key前缀区分。
+     * 每条命令都会调用，Timer按(命令, 前缀, 异常)缓存，不在热路径上每次构建标签并查找注册表
+     */
+    @Bean
+    public RedisCommandListener redisMetricsListener(MeterRegistry registry) {
+        Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+        return (command, key, args, nanos, error) -> {
+            String prefix = RedisCommandListener.prefix(key);
+            String exception = error == null ? "none" : error.getClass().getSimpleName();
+            timers.computeIfAbsent(Arrays.asList(command, prefix, exception), k -> Timer.builder("redis.commands")
+                            .tag("command", command)
+                            .tag("prefix", prefix)
+                            .tag("exception", exception)
+                            .register(registry))
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        };
+    }
+
+    /**
+     * Lettuce连接池(commons-pool2)的使用情况。连接池在第一次获取连接时才创建，因此每次采集时通过JMX查找并汇总
+     */
+    @Bean
+    public MeterBinder redisPoolMetrics() {
+        return registry -> {
+            Gauge.builder("redis.pool.active", () -> poolAttribute("NumActive"))
+                    .description("Lettuce连接池中正在使用的连接数").register(registry);
+            Gauge.builder("redis.pool.idle", () -> poolAttribute("NumIdle"))
+                    .description("Lettuce连接池中的空闲连接数").register(registry);
+            Gauge.builder("redis.pool.waiters", () -> poolAttribute("NumWaiters"))
+                    .description("等待Lettuce连接的线程数").register(registry);
+            Gauge.builder("redis.pool.max", () -> poolAttribute("MaxTotal"))
+                    .description("Lettuce连接池的最大连接数").register(registry);
+        };
+    }
+
+    private static double poolAttribute(String attribute) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        double total = 0;
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName("org.apache.commons.pool2:type=GenericObjectPool,*"), null)) {
+                total += ((Number) server.getAttribute(name, attribute)).doubleValue();
+            }
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+        return total;
+    }
+}
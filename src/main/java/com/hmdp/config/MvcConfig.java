@@ -22,9 +22,12 @@ public class MvcConfig implements WebMvcConfigurer {
         registry.addInterceptor(new loginInterceptor()).excludePathPatterns("/user/code",
                 "/user/login",
                 "/blog/hot",
+                "/blog-comments/of/blog",
                 "/shop/**",
                 "/shop-type/**",
-                "/upload/**",
+                "/imgs/**",
+                "/actuator/**",
+                "/admin/**",
                 "/voucher/**").order(1);
 
     }
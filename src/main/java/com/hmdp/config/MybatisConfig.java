@@ -3,6 +3,10 @@ package com.hmdp.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.hmdp.utils.MybatisMetricsInterceptor;
+import com.hmdp.utils.SlowLog;
+import com.hmdp.utils.SlowSqlInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,4 +18,14 @@ public class MybatisConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
+
+    @Bean
+    public SlowSqlInterceptor slowSqlInterceptor(SlowLog slowLog) {
+        return new SlowSqlInterceptor(slowLog);
+    }
+
+    @Bean
+    public MybatisMetricsInterceptor mybatisMetricsInterceptor(MeterRegistry registry) {
+        return new MybatisMetricsInterceptor(registry);
+    }
 }
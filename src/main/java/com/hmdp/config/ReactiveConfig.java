@@ -0,0 +1,95 @@
+package com.hmdp.config;
+
+import com.hmdp.controller.ReactiveQueryHandler;
+import com.hmdp.utils.AdminAuthFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxRegistrations;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.WebFilter;
+
+/**
+ * reactive环境(spring.profiles.active=reactive)：基于Netty和WebFlux，只提供热点只读接口，
+ * 由网关把这几个路径转发到reactive节点，其余请求仍由MVC节点处理
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfig {
+
+    /**
+     * 有R2DBC的ConnectionFactory时Spring Boot不再创建DataSource，
+     * MyBatis、Flyway和其他阻塞的服务仍需要JDBC连接池，这里按spring.datasource配置创建
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> queryRoutes(ReactiveQueryHandler handler) {
+        return RouterFunctions.route()
+                .GET("/shop/of/type", handler::queryShopByType)
+                .GET("/shop/{id}", handler::queryShopById)
+                .GET("/blog/hot", handler::queryHotBlog)
+                .GET("/shop-type/list", handler::queryTypeList)
+                .onError(IllegalArgumentException.class, (e, request) -> ServerResponse.badRequest().build())
+                .build();
+    }
+
+    /**
+     * 管理接口的鉴权，路径和规则与MVC环境的AdminAuthConfig相同
+     */
+    @Bean
+    public WebFilter adminAuthWebFilter(@Value("${hmdp.admin.token:}") String token) {
+        AdminAuthFilter auth = new AdminAuthFilter(token, AdminAuthConfig.ADMIN_PATHS);
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (!auth.requiresAdmin(request.getPath().pathWithinApplication().value())
+                    || auth.isAdmin(request.getHeaders().getFirst(AdminAuthFilter.TOKEN_HEADER))) {
+                return chain.filter(exchange);
+            }
+            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            return exchange.getResponse().setComplete();
+        };
+    }
+
+    /**
+     * classpath中同时有Tomcat和Netty，reactive环境使用Netty的事件循环
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * MVC的控制器依赖Servlet API和拦截器中的登录用户，不注册到WebFlux
+     */
+    @Bean
+    public WebFluxRegistrations reactiveRegistrations() {
+        return new WebFluxRegistrations() {
+            @Override
+            public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+                return new RequestMappingHandlerMapping() {
+                    @Override
+                    protected boolean isHandler(Class<?> beanType) {
+                        return !beanType.getName().startsWith("com.hmdp.controller.") && super.isHandler(beanType);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.InstrumentedStringRedisTemplate;
+import com.hmdp.utils.JsonRedisSerializer;
+import com.hmdp.utils.KryoRedisSerializer;
+import com.hmdp.utils.RedisCommandListener;
+import com.hmdp.utils.SlowLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * 替换Spring Boot自动配置的StringRedisTemplate，每条命令通知所有RedisCommandListener
+     */
+    @Bean
+    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                   List<RedisCommandListener> listeners) {
+        return new InstrumentedStringRedisTemplate(connectionFactory, listeners);
+    }
+
+    /**
+     * CacheClient缓存值的序列化方式：json与之前的格式相同，kryo为二进制并在超过阈值时用LZ4压缩。
+     * 切换后旧格式的缓存当作未命中，按TTL逐步替换
+     */
+    @Bean
+    public RedisSerializer<Object> cacheSerializer(@Value("${hmdp.cache.serializer:json}") String serializer,
+                                                   @Value("${hmdp.cache.compress-threshold:512}") int compressThreshold) {
+        switch (serializer) {
+            case "json":
+                return new JsonRedisSerializer();
+            case "kryo":
+                return new KryoRedisSerializer(compressThreshold);
+            default:
+                throw new IllegalArgumentException("不支持的缓存序列化方式: " + serializer);
+        }
+    }
+
+    /**
+     * 订阅缓存失效消息，删除本节点的本地缓存
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       CacheInvalidator cacheInvalidator) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidator, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        return container;
+    }
+
+    /**
+     * 慢Redis命令追踪，记录命令、key前缀和参数摘要，不记录完整的key和值
+     */
+    @Bean
+    public RedisCommandListener slowRedisListener(SlowLog slowLog) {
+        return (command, key, args, nanos, error) -> {
+            if (slowLog.isSlowRedis(nanos)) {
+                slowLog.record("REDIS", command, RedisCommandListener.prefix(key), argsSummary(args), -1, nanos);
+            }
+        };
+    }
+
+    private static String argsSummary(Object[] args) {
+        if (args == null) {
+            return "[]";
+        }
+        StringBuilder summary = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                summary.append(", ");
+            }
+            Object arg = args[i];
+            if (arg instanceof byte[]) {
+                summary.append("byte[").append(((byte[]) arg).length).append(']');
+            } else if (arg instanceof Object[]) {
+                summary.append("array[").append(((Object[]) arg).length).append(']');
+            } else if (arg instanceof Map) {
+                summary.append("map[").append(((Map<?, ?>) arg).size()).append(']');
+            } else {
+                summary.append(arg);
+            }
+        }
+        return summary.append(']').toString();
+    }
+}
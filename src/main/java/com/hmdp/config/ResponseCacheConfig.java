@@ -0,0 +1,38 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.ResponseCache;
+import com.hmdp.utils.ResponseCacheFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点GET接口的响应缓存(hmdp.response-cache.enabled=true)。
+ * 店铺详情、店铺类型修改时由CacheInvalidator删除所有节点的条目，有效期只是失效消息丢失时的兜底；
+ * 热门笔记的点赞数随时变化，只缓存1秒
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "hmdp.response-cache.enabled", havingValue = "true")
+public class ResponseCacheConfig {
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(
+            ResponseCache responseCache, @Value("${hmdp.response-cache.gzip-min-size:1024}") int gzipMinSize) {
+        ResponseCacheFilter filter = new ResponseCacheFilter(responseCache, gzipMinSize)
+                // 店铺类型的本地快照不随失效消息删除,最长60秒后才更新,条目的有效期更短也只会再读到同一份快照
+                .cache("/shop-type/list", TimeUnit.SECONDS.toMillis(60))
+                .cache("/shop/{id}", TimeUnit.SECONDS.toMillis(10))
+                .cache("/blog/hot", TimeUnit.SECONDS.toMillis(1), "current", "cursor");
+        FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/shop-type/list", "/shop/*", "/blog/hot");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,25 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.SlowLog;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * 最近的慢SQL和慢Redis命令：GET /actuator/slowlog
+ */
+@Component
+@Endpoint(id = "slowlog")
+public class SlowLogEndpoint {
+
+    @Resource
+    private SlowLog slowLog;
+
+    @ReadOperation
+    public List<SlowLog.SlowEvent> recent() {
+        return slowLog.recent();
+    }
+}
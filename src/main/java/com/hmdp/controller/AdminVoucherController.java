@@ -0,0 +1,32 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Voucher;
+import com.hmdp.service.IVoucherService;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ *  优惠券的管理接口，由商户后台调用，需要管理员token(AdminAuthConfig)
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/voucher")
+public class AdminVoucherController {
+
+    @Resource
+    private IVoucherService voucherService;
+
+    /**
+     * 更新优惠券信息
+     * @param voucher 优惠券信息，秒杀券可同时更新秒杀信息
+     * @return 无
+     */
+    @PutMapping
+    public Result updateVoucher(@RequestBody Voucher voucher) {
+        return voucherService.updateVoucher(voucher);
+    }
+}
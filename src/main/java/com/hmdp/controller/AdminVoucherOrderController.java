@@ -0,0 +1,46 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IVoucherOrderService;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ *  订单的管理接口，由商户后台和支付渠道的回调调用，需要管理员token(AdminAuthConfig)
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/voucher-order")
+public class AdminVoucherOrderController {
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    /**
+     * 支付成功，由支付渠道的回调调用
+     * @param payType 支付方式 1：余额支付；2：支付宝；3：微信
+     */
+    @PostMapping("{id}/paid")
+    public Result paid(@PathVariable("id") Long orderId, @RequestParam(value = "payType", defaultValue = "1") Integer payType) {
+        return voucherOrderService.paid(orderId, payType);
+    }
+
+    /**
+     * 核销
+     */
+    @PostMapping("{id}/use")
+    public Result use(@PathVariable("id") Long orderId) {
+        return voucherOrderService.use(orderId);
+    }
+
+    /**
+     * 退款完成，由支付渠道的回调调用
+     */
+    @PostMapping("{id}/refund/complete")
+    public Result completeRefund(@PathVariable("id") Long orderId) {
+        return voucherOrderService.completeRefund(orderId);
+    }
+}
@@ -1,9 +1,12 @@
 package com.hmdp.controller;
 
 
-import org.springframework.web.bind.annotation.RequestMapping;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import org.springframework.web.bind.annotation.*;
 
-import org.springframework.web.bind.annotation.RestController;
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -17,4 +20,38 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/blog-comments")
 public class BlogCommentsController {
 
+    @Resource
+    private IBlogCommentsService blogCommentsService;
+
+    /**
+     * 发表评论或回复
+     * @param comment 评论内容，回复时需要一级评论id(parentId)，可选被回复的评论id(answerId)
+     * @return 评论id
+     */
+    @PostMapping
+    public Result saveComment(@RequestBody BlogComments comment) {
+        return blogCommentsService.saveComment(comment);
+    }
+
+    /**
+     * 分页查询博文的一级评论，每条评论附带前几条回复
+     * @param blogId 博文id
+     * @param current 页码
+     * @return 评论列表
+     */
+    @GetMapping("/of/blog")
+    public Result queryComments(
+            @RequestParam("blogId") Long blogId,
+            @RequestParam(value = "current", defaultValue = "1") Integer current) {
+        return blogCommentsService.queryComments(blogId, current);
+    }
+
+    /**
+     * 点赞评论，已点赞时取消点赞
+     * @param id 评论id
+     */
+    @PutMapping("/like/{id}")
+    public Result likeComment(@PathVariable("id") Long id) {
+        return blogCommentsService.likeComment(id);
+    }
 }
@@ -0,0 +1,189 @@
+package com.hmdp.controller;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.utils.ImageFileCache;
+import com.hmdp.utils.SystemConstants;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 直接从上传目录提供图片，用于没有nginx的单机部署，hmdp.image.serve-enabled=true时启用。
+ * 支持Tomcat的sendfile时由Tomcat零拷贝发送文件，否则用FileChannel.transferTo写入响应；
+ * 支持单个Range、ETag/Last-Modified，图片名称不会复用，因此可以长期缓存。
+ * 只提供SystemConstants.IMAGE_SUFFIXES中的图片类型，并禁止浏览器猜测内容类型(nosniff)
+ */
+@RestController
+@ConditionalOnProperty(name = "hmdp.image.serve-enabled", havingValue = "true")
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String X_CONTENT_TYPE_OPTIONS = "X-Content-Type-Options";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Resource
+    private ImageFileCache imageFileCache;
+
+    @RequestMapping(value = "/imgs/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        //1.解析图片名称
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String name = "/" + pathMatcher.extractPathWithinPattern(pattern, path);
+        //2.只提供允许的图片类型,不提供暂存区等隐藏文件
+        if (!isImage(name)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ImageFileCache.Handle handle;
+        try {
+            handle = imageFileCache.acquire(name);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (handle == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try {
+            //3.协商缓存,ETag或Last-Modified未变化时返回304
+            String etag = "\"" + Long.toHexString(handle.getSize()) + "-" + Long.toHexString(handle.getLastModified()) + "\"";
+            // 禁止浏览器按内容猜测类型,图片不会被当作页面或脚本执行
+            response.setHeader(X_CONTENT_TYPE_OPTIONS, "nosniff");
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    "public, max-age=" + SystemConstants.IMAGE_MAX_AGE + ", immutable");
+            if (new ServletWebRequest(request, response).checkNotModified(etag, handle.getLastModified())) {
+                return;
+            }
+            //4.解析Range,计算要发送的区间
+            long size = handle.getSize();
+            long start = 0, end = size - 1;
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            long[] range = parseRange(request, etag, handle.getLastModified(), size);
+            if (range != null) {
+                if (range.length == 0) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = range[0];
+                end = range[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+            long length = end - start + 1;
+            response.setContentType(MediaTypeFactory.getMediaType(name)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setContentLengthLong(length);
+            if ("HEAD".equals(request.getMethod()) || length == 0) {
+                return;
+            }
+            //5.发送文件
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // Tomcat在响应提交后用sendfile发送,自己打开文件,不占用缓存的句柄
+                request.setAttribute(SENDFILE_FILENAME, handle.getPath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                return;
+            }
+            transfer(handle.getChannel(), start, length, Channels.newChannel(response.getOutputStream()));
+        } finally {
+            imageFileCache.release(handle);
+        }
+    }
+
+    /**
+     * 扩展名是允许的图片类型，且路径中没有以.开头的隐藏文件或目录
+     */
+    static boolean isImage(String name) {
+        String suffix = StrUtil.subAfter(name, ".", true);
+        return !name.contains("/.") && SystemConstants.IMAGE_SUFFIXES.contains(suffix.toLowerCase());
+    }
+
+    /**
+     * 解析单个区间的Range请求头
+     * @return 不是Range请求、If-Range不匹配或包含多个区间时返回null(返回整个文件)，
+     * 区间无法满足时返回空数组，否则返回[start, end]
+     */
+    static long[] parseRange(HttpServletRequest request, String etag, long lastModified, long size) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (StrUtil.isBlank(header) || !header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        // If-Range与当前版本不一致,说明客户端缓存的片段已过期,返回整个文件
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StrUtil.isNotBlank(ifRange)) {
+            boolean isEtag = ifRange.startsWith("\"") || ifRange.startsWith("W/");
+            if (isEtag ? !ifRange.equals(etag) : ifRangeDate(request) / 1000 != lastModified / 1000) {
+                return null;
+            }
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start, end;
+            if (dash == 0) {
+                //1.bytes=-n,最后n个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                //2.bytes=a-或bytes=a-b
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+                if (end < start) {
+                    return start >= size ? new long[0] : null;
+                }
+            }
+            return start >= size ? new long[0] : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long ifRangeDate(HttpServletRequest request) {
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        while (count > 0) {
+            long n = channel.transferTo(position, count, target);
+            if (n <= 0) {
+                break;
+            }
+            position += n;
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.hmdp.controller;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.ShopType;
+import com.hmdp.entity.User;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.ReactiveCacheClient;
+import com.hmdp.utils.SystemConstants;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * reactive环境下的只读接口：/shop/{id}、/shop/of/type、/blog/hot、/shop-type/list。
+ * 返回结果、缓存key和缓存格式与MVC的实现一致；Redis和数据库都是非阻塞访问，全程不占用事件循环线程等待I/O
+ */
+@Component
+@Profile("reactive")
+public class ReactiveQueryHandler {
+
+    private static final String SHOP_COLUMNS = "id, name, type_id, images, area, address, x, y, avg_price, "
+            + "sold, comments, score, open_hours, create_time, update_time";
+    private static final String BLOG_COLUMNS = "id, shop_id, user_id, title, images, content, liked, comments, "
+            + "create_time, update_time";
+
+    @Resource
+    private ReactiveCacheClient reactiveCacheClient;
+
+    @Resource
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Resource
+    private DatabaseClient databaseClient;
+
+    /**
+     * 根据id查询商铺信息
+     */
+    public Mono<ServerResponse> queryShopById(ServerRequest request) {
+        Long id = Long.valueOf(request.pathVariable("id"));
+        Mono<Result> result = reactiveCacheClient.queryWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, id,
+                        Shop.class, this::findShop, CACHE_SHOP_TTL, TimeUnit.MINUTES)
+                .map(Result::ok)
+                .defaultIfEmpty(Result.fail("店铺不存在"));
+        return ok(result);
+    }
+
+    /**
+     * 根据商铺类型分页查询商铺信息
+     */
+    public Mono<ServerResponse> queryShopByType(ServerRequest request) {
+        Integer typeId = Integer.valueOf(request.queryParam("typeId")
+                .orElseThrow(() -> new IllegalArgumentException("缺少参数typeId")));
+        int current = Math.max(request.queryParam("current").map(Integer::valueOf).orElse(1), 1);
+        String cursor = request.queryParam("cursor").orElse(null);
+        int size = SystemConstants.DEFAULT_PAGE_SIZE;
+        //1.没有游标,按页码分页查询
+        if (cursor == null) {
+            Mono<Result> result = databaseClient
+                    .execute("SELECT " + SHOP_COLUMNS + " FROM tb_shop WHERE type_id = :typeId LIMIT :size OFFSET :offset")
+                    .bind("typeId", typeId)
+                    .bind("size", size)
+                    .bind("offset", (long) (current - 1) * size)
+                    .fetch().all()
+                    .map(row -> toBean(row, Shop.class))
+                    .collectList()
+                    .map(Result::ok);
+            return ok(result);
+        }
+        //2.有游标,从上一页最后一个店铺的id之后开始查询
+        long[] last;
+        try {
+            last = CursorUtils.decode(cursor, 1);
+        } catch (IllegalArgumentException e) {
+            return ok(Mono.just(Result.fail("无效的分页游标")));
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient
+                .execute("SELECT " + SHOP_COLUMNS + " FROM tb_shop WHERE type_id = :typeId"
+                        + (last == null ? "" : " AND id > :lastId") + " ORDER BY id LIMIT :size")
+                .bind("typeId", typeId)
+                .bind("size", size);
+        if (last != null) {
+            spec = spec.bind("lastId", last[0]);
+        }
+        Mono<Result> result = spec.fetch().all()
+                .map(row -> toBean(row, Shop.class))
+                .collectList()
+                .map(shops -> {
+                    //3.不足一页说明没有下一页
+                    String nextCursor = shops.size() < size
+                            ? null : CursorUtils.encode(shops.get(shops.size() - 1).getId());
+                    return Result.ok(new CursorResult(shops, nextCursor));
+                });
+        return ok(result);
+    }
+
+    /**
+     * 查询热门笔记
+     */
+    public Mono<ServerResponse> queryHotBlog(ServerRequest request) {
+        int current = Math.max(request.queryParam("current").map(Integer::valueOf).orElse(1), 1);
+        String cursor = request.queryParam("cursor").orElse(null);
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        Flux<Map<String, Object>> rows;
+        if (cursor == null) {
+            //1.没有游标,按页码分页查询
+            rows = databaseClient
+                    .execute("SELECT " + BLOG_COLUMNS + " FROM tb_blog ORDER BY liked DESC, id DESC LIMIT :size OFFSET :offset")
+                    .bind("size", size)
+                    .bind("offset", (long) (current - 1) * size)
+                    .fetch().all();
+        } else {
+            //2.有游标,查询排在上一页最后一条(liked, id)之后的数据
+            long[] last;
+            try {
+                last = CursorUtils.decode(cursor, 2);
+            } catch (IllegalArgumentException e) {
+                return ok(Mono.just(Result.fail("无效的分页游标")));
+            }
+            DatabaseClient.GenericExecuteSpec spec = databaseClient
+                    .execute("SELECT " + BLOG_COLUMNS + " FROM tb_blog"
+                            + (last == null ? "" : " WHERE liked <= :liked AND (liked < :liked OR id < :lastId)")
+                            + " ORDER BY liked DESC, id DESC LIMIT :size")
+                    .bind("size", size);
+            if (last != null) {
+                spec = spec.bind("liked", last[0]).bind("lastId", last[1]);
+            }
+            rows = spec.fetch().all();
+        }
+        Mono<Result> result = rows.map(row -> toBean(row, Blog.class))
+                .collectList()
+                .flatMap(blogs -> {
+                    //3.游标取数据库中的点赞数,与查询条件一致
+                    String nextCursor = null;
+                    if (cursor != null && blogs.size() == size) {
+                        Blog lastBlog = blogs.get(blogs.size() - 1);
+                        nextCursor = CursorUtils.encode(liked(lastBlog), lastBlog.getId());
+                    }
+                    CursorResult cursorResult = new CursorResult(blogs, nextCursor);
+                    //4.加上尚未写入数据库的点赞数和评论数,查询作者
+                    return fillBlogs(blogs).map(filled -> cursor == null ? Result.ok(filled) : Result.ok(cursorResult));
+                });
+        return ok(result);
+    }
+
+    /**
+     * 查询店铺类型列表，支持ETag/If-None-Match
+     */
+    public Mono<ServerResponse> queryTypeList(ServerRequest request) {
+        //1.从Redis查询类型列表,不存在时查询数据库并写入Redis
+        Mono<String> cached = reactiveStringRedisTemplate.opsForValue().get(CACHE_SHOP_TYPE_KEY)
+                .filter(StrUtil::isNotBlank)
+                .doOnNext(json -> CacheMetrics.hit(CACHE_SHOP_TYPE_KEY));
+        Mono<String> loaded = Mono.defer(() -> {
+            CacheMetrics.miss(CACHE_SHOP_TYPE_KEY);
+            return databaseClient
+                    .execute("SELECT id, name, icon, sort, create_time, update_time FROM tb_shop_type ORDER BY sort")
+                    .fetch().all()
+                    .map(row -> toBean(row, ShopType.class))
+                    .collectList()
+                    .map(JSONUtil::toJsonStr)
+                    .flatMap(json -> reactiveStringRedisTemplate.opsForValue()
+                            .set(CACHE_SHOP_TYPE_KEY, json, Duration.ofMinutes(CACHE_SHOP_TYPE_TTL))
+                            .thenReturn(json));
+        });
+        return cached.switchIfEmpty(loaded).flatMap(json -> {
+            //2.以内容摘要作为版本号,与MVC的实现一致,客户端已有最新版本时返回304
+            String version = DigestUtils.md5DigestAsHex(json.getBytes(StandardCharsets.UTF_8));
+            if (request.exchange().checkNotModified(version)) {
+                return ServerResponse.status(HttpStatus.NOT_MODIFIED).build();
+            }
+            return ServerResponse.ok().bodyValue(Result.ok(JSONUtil.toList(json, ShopType.class)));
+        });
+    }
+
+    private Mono<Shop> findShop(Long id) {
+        return databaseClient.execute("SELECT " + SHOP_COLUMNS + " FROM tb_shop WHERE id = :id")
+                .bind("id", id)
+                .fetch().one()
+                .map(row -> toBean(row, Shop.class));
+    }
+
+    /**
+     * 加上尚未写入数据库的点赞数和评论数，并填充作者信息
+     */
+    private Mono<List<Blog>> fillBlogs(List<Blog> blogs) {
+        if (blogs.isEmpty()) {
+            return Mono.just(blogs);
+        }
+        List<Long> ids = blogs.stream().map(Blog::getId).collect(Collectors.toList());
+        Set<Long> userIds = blogs.stream().map(Blog::getUserId).collect(Collectors.toSet());
+        Mono<Map<Long, User>> users = databaseClient
+                .execute("SELECT id, nick_name, icon FROM tb_user WHERE id IN (:ids)")
+                .bind("ids", userIds)
+                .fetch().all()
+                .map(row -> toBean(row, User.class))
+                .collectMap(User::getId, Function.identity());
+        return Mono.zip(pending(CounterType.BLOG_LIKED, ids), pending(CounterType.BLOG_COMMENTS, ids), users)
+                .map(tuple -> {
+                    for (Blog blog : blogs) {
+                        blog.setLiked((int) (liked(blog) + tuple.getT1().get(blog.getId())));
+                        blog.setComments((int) ((blog.getComments() == null ? 0 : blog.getComments())
+                                + tuple.getT2().get(blog.getId())));
+                        User user = tuple.getT3().get(blog.getUserId());
+                        if (user != null) {
+                            blog.setName(user.getNickName());
+                            blog.setIcon(user.getIcon());
+                        }
+                    }
+                    return blogs;
+                });
+    }
+
+    /**
+     * Redis中尚未写入数据库的增量，与CounterService.pending一致；reactive节点不处理写请求，JVM内没有增量
+     */
+    private Mono<Map<Long, Long>> pending(CounterType type, List<Long> ids) {
+        List<Object> fields = ids.stream().map(String::valueOf).collect(Collectors.toList());
+        return Flux.just(type.key(), type.flushingKey())
+                .flatMap(key -> reactiveStringRedisTemplate.opsForHash().multiGet(key, fields))
+                .collectList()
+                .map(lists -> {
+                    Map<Long, Long> result = new HashMap<>(ids.size());
+                    ids.forEach(id -> result.put(id, 0L));
+                    for (List<Object> deltas : lists) {
+                        for (int i = 0; i < ids.size(); i++) {
+                            Object delta = deltas.get(i);
+                            if (delta != null && StrUtil.isNotBlank(delta.toString())) {
+                                result.merge(ids.get(i), Long.parseLong(delta.toString()), Long::sum);
+                            }
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    private static int liked(Blog blog) {
+        return blog.getLiked() == null ? 0 : blog.getLiked();
+    }
+
+    /**
+     * 数据库的一行转换为实体，列名下划线转驼峰
+     */
+    private static <T> T toBean(Map<String, Object> row, Class<T> type) {
+        return BeanUtil.fillBeanWithMap(row, ReflectUtil.newInstance(type), true, true);
+    }
+
+    private static Mono<ServerResponse> ok(Mono<Result> result) {
+        return result.flatMap(r -> ServerResponse.ok().bodyValue(r));
+    }
+}
@@ -4,9 +4,11 @@ package com.hmdp.controller;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.VersionedData;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -25,10 +27,17 @@ public class ShopTypeController {
     @Resource
     private IShopTypeService typeService;
 
+    /**
+     * 查询店铺类型列表，支持ETag/If-None-Match
+     * @return 类型列表，客户端版本与当前版本一致时返回304
+     */
     @GetMapping("list")
-    public Result queryTypeList() {
-        List<ShopType> typeList = typeService
-                .query().orderByAsc("sort").list();
-        return Result.ok(typeList);
+    public Result queryTypeList(WebRequest webRequest) {
+        VersionedData<List<ShopType>> typeList = typeService.queryTypeList();
+        // 客户端已有最新版本,直接返回304
+        if (webRequest.checkNotModified(typeList.getVersion())) {
+            return null;
+        }
+        return Result.ok(typeList.getData());
     }
 }
@@ -2,10 +2,10 @@ package com.hmdp.controller;
 
 
 import com.hmdp.dto.Result;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import com.hmdp.service.IVoucherOrderService;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -18,8 +18,42 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/voucher-order")
 public class VoucherOrderController {
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    /**
+     * 秒杀下单
+     * @param voucherId 秒杀券id
+     * @return 订单id，超过支付期限未支付自动取消
+     */
     @PostMapping("seckill/{id}")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
-        return Result.fail("功能未完成");
+        return voucherOrderService.seckillVoucher(voucherId);
+    }
+
+    /**
+     * 发起支付，返回支付金额和截止时间，支付结果由支付渠道回调/admin/voucher-order/{id}/paid确认
+     * @param payType 支付方式 1：余额支付；2：支付宝；3：微信
+     */
+    @PostMapping("{id}/pay")
+    public Result pay(@PathVariable("id") Long orderId, @RequestParam(value = "payType", defaultValue = "1") Integer payType) {
+        return voucherOrderService.pay(orderId, payType);
+    }
+
+    /**
+     * 取消未支付的订单
+     */
+    @PostMapping("{id}/cancel")
+    public Result cancel(@PathVariable("id") Long orderId) {
+        return voucherOrderService.cancel(orderId);
+    }
+
+    /**
+     * 申请退款
+     */
+    @PostMapping("{id}/refund")
+    public Result refund(@PathVariable("id") Long orderId) {
+        return voucherOrderService.refund(orderId);
     }
 }
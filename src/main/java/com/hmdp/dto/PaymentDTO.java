@@ -0,0 +1,29 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发起支付的结果，客户端据此调用支付渠道，支付结果由支付渠道回调确认
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentDTO {
+    private Long orderId;
+    /**
+     * 支付方式 1：余额支付；2：支付宝；3：微信
+     */
+    private Integer payType;
+    /**
+     * 支付金额，单位是分
+     */
+    private Long amount;
+    /**
+     * 支付截止时间，之后订单自动取消
+     */
+    private LocalDateTime deadline;
+}
@@ -26,6 +26,13 @@ public class VoucherOrder implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final int STATUS_UNPAID = 1;
+    public static final int STATUS_PAID = 2;
+    public static final int STATUS_USED = 3;
+    public static final int STATUS_CANCELLED = 4;
+    public static final int STATUS_REFUNDING = 5;
+    public static final int STATUS_REFUNDED = 6;
+
     /**
      * 主键
      */
@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogCommentsMapper extends BaseMapper<BlogComments> {
 
+    /**
+     * 一次查询出多个一级评论各自最早的limit条回复。
+     * 每个一级评论一条子查询，按(blog_id, parent_id)索引有序读取，只读limit行，与回复总数无关
+     */
+    List<BlogComments> queryTopReplies(@Param("blogId") Long blogId,
+                                       @Param("parentIds") List<Long> parentIds,
+                                       @Param("limit") int limit);
 }
@@ -0,0 +1,20 @@
+package com.hmdp.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Map;
+
+/**
+ * 计数器字段的批量累加
+ */
+public interface CounterMapper {
+
+    /**
+     * 一条UPDATE累加多行的计数，表名和字段名来自CounterType，不接受外部输入
+     * @param deltas id -> 增量
+     */
+    int incr(@Param("table") String table,
+             @Param("column") String column,
+             @Param("idColumn") String idColumn,
+             @Param("deltas") Map<Long, Long> deltas);
+}
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,13 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    Result queryHotBlog(Integer current, String cursor);
+
+    Result queryMyBlog(Integer current, String cursor);
+
+    Result saveBlog(Blog blog);
+
+    Result deleteBlog(Long id);
+
+    Result likeBlog(Long id);
 }
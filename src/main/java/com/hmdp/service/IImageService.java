@@ -0,0 +1,29 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  图片上传服务类
+ * </p>
+ */
+public interface IImageService {
+
+    Result uploadBlogImage(MultipartFile image);
+
+    Result deleteBlogImage(String name);
+
+    /**
+     * 记录笔记对图片的引用，笔记删除前图片不会被删除
+     * @return 有图片不存在时撤销全部引用并返回false
+     */
+    boolean referenceBlogImages(Long blogId, List<String> names);
+
+    /**
+     * 释放笔记对图片的引用，没有其他引用的图片被删除
+     */
+    void releaseBlogImages(Long blogId, List<String> names);
+}
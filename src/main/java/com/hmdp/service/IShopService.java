@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,13 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IShopService extends IService<Shop> {
 
+    Result queryById(Long id);
+
+    void saveShop(Shop shop);
+
+    Result updateShop(Shop shop);
+
+    Result queryShopByType(Integer typeId, Integer current, String cursor);
+
+    Result queryShopByName(String name, Integer current, String cursor);
 }
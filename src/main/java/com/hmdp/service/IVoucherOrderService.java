@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,41 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IVoucherOrderService extends IService<VoucherOrder> {
 
+    Result seckillVoucher(Long voucherId);
+
+    /**
+     * 数据库中扣减库存并创建订单，在一个事务中
+     * @return 库存不足时返回false
+     */
+    boolean createSeckillOrder(VoucherOrder order);
+
+    /**
+     * 发起支付，只校验订单并返回支付信息，不修改订单状态
+     */
+    Result pay(Long orderId, Integer payType);
+
+    /**
+     * 支付成功，由支付渠道的回调(管理接口)调用，不检查下单用户
+     */
+    Result paid(Long orderId, Integer payType);
+
+    /**
+     * 核销，由管理接口调用，不检查下单用户
+     */
+    Result use(Long orderId);
+
+    Result cancel(Long orderId);
+
+    /**
+     * 数据库中取消未支付的订单并归还库存，在一个事务中
+     * @return 订单不是未支付状态时返回false
+     */
+    boolean cancelUnpaidOrder(VoucherOrder order);
+
+    Result refund(Long orderId);
+
+    /**
+     * 退款完成，由管理接口调用，不检查下单用户
+     */
+    Result completeRefund(Long orderId);
 }
@@ -1,11 +1,35 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
+import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.CounterFlushedEvent;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_TTL;
+import static com.hmdp.utils.RedisConstants.COMMENT_LIKED_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +41,161 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private IBlogService blogService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CounterService counterService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    @Override
+    public Result saveComment(BlogComments comment) {
+        if (comment.getBlogId() == null || StrUtil.isBlank(comment.getContent())) {
+            return Result.fail("评论内容不能为空");
+        }
+        if (blogService.getById(comment.getBlogId()) == null) {
+            return Result.fail("笔记不存在");
+        }
+        //1.没有一级评论id,说明是一级评论
+        if (comment.getParentId() == null || comment.getParentId() == 0) {
+            comment.setParentId(0L);
+            comment.setAnswerId(0L);
+        } else {
+            //2.是回复,校验一级评论
+            BlogComments parent = getById(comment.getParentId());
+            if (parent == null || !parent.getBlogId().equals(comment.getBlogId()) || parent.getParentId() != 0) {
+                return Result.fail("回复的评论不存在");
+            }
+            if (comment.getAnswerId() == null || comment.getAnswerId() == 0) {
+                comment.setAnswerId(parent.getId());
+            } else if (!comment.getAnswerId().equals(parent.getId())) {
+                //3.被回复的评论必须是同一条一级评论下的回复
+                BlogComments answer = getById(comment.getAnswerId());
+                if (answer == null || !answer.getBlogId().equals(comment.getBlogId())
+                        || !answer.getParentId().equals(parent.getId())) {
+                    return Result.fail("回复的评论不存在");
+                }
+            }
+        }
+        //4.保存评论
+        UserDTO user = UserHolder.getUser();
+        comment.setId(null);
+        comment.setUserId(user.getId());
+        comment.setLiked(0);
+        comment.setStatus(false);
+        save(comment);
+        //5.评论数量由计数器服务写回数据库
+        counterService.increment(CounterType.BLOG_COMMENTS, comment.getBlogId());
+        //6.删除第一页评论的缓存
+        cacheInvalidator.invalidateBlogComments(comment.getBlogId());
+        return Result.ok(comment.getId());
+    }
+
+    @Override
+    public Result queryComments(Long blogId, Integer current) {
+        current = Math.max(current, 1);
+        //1.第一页访问最多,走缓存
+        List<BlogComments> comments = current == 1
+                ? cacheClient.queryListWithPassThrough(CACHE_BLOG_COMMENTS_KEY, blogId, BlogComments.class,
+                        id -> queryCommentPage(id, 1), CACHE_BLOG_COMMENTS_TTL, TimeUnit.MINUTES)
+                : queryCommentPage(blogId, current);
+        //2.加上尚未写入数据库的点赞数
+        List<BlogComments> all = new ArrayList<>(comments);
+        comments.forEach(comment -> all.addAll(comment.getReplies()));
+        Map<Long, Long> pendingLiked = counterService.pending(CounterType.COMMENT_LIKED,
+                all.stream().map(BlogComments::getId).collect(Collectors.toList()));
+        all.forEach(comment -> comment.setLiked(
+                (int) ((comment.getLiked() == null ? 0 : comment.getLiked()) + pendingLiked.get(comment.getId()))));
+        return Result.ok(comments);
+    }
+
+    /**
+     * 查询一页一级评论及每条评论的前几条回复：一次查询一级评论，一次查询所有回复，一次查询所有用户
+     */
+    private List<BlogComments> queryCommentPage(Long blogId, Integer current) {
+        //1.查询一级评论
+        List<BlogComments> comments = query()
+                .eq("blog_id", blogId)
+                .eq("parent_id", 0)
+                .orderByDesc("id")
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false))
+                .getRecords();
+        if (comments.isEmpty()) {
+            return comments;
+        }
+        //2.一次查询所有一级评论的前几条回复
+        List<Long> parentIds = comments.stream().map(BlogComments::getId).collect(Collectors.toList());
+        List<BlogComments> replies = getBaseMapper()
+                .queryTopReplies(blogId, parentIds, SystemConstants.COMMENT_REPLY_SIZE);
+        Map<Long, List<BlogComments>> replyMap = replies.stream()
+                .collect(Collectors.groupingBy(BlogComments::getParentId));
+        comments.forEach(comment ->
+                comment.setReplies(replyMap.getOrDefault(comment.getId(), Collections.emptyList())));
+        //3.一次查询评论用户
+        Set<Long> userIds = new HashSet<>();
+        comments.forEach(comment -> userIds.add(comment.getUserId()));
+        replies.forEach(reply -> userIds.add(reply.getUserId()));
+        Map<Long, UserDTO> userMap = userService.queryUserDTOs(userIds);
+        comments.forEach(comment -> fillUser(comment, userMap));
+        replies.forEach(reply -> fillUser(reply, userMap));
+        return comments;
+    }
+
+    private void fillUser(BlogComments comment, Map<Long, UserDTO> userMap) {
+        UserDTO user = userMap.get(comment.getUserId());
+        if (user != null) {
+            comment.setName(user.getNickName());
+            comment.setIcon(user.getIcon());
+        }
+    }
+
+    @Override
+    public Result likeComment(Long id) {
+        BlogComments comment = getById(id);
+        if (comment == null) {
+            return Result.fail("评论不存在");
+        }
+        //1.判断当前用户是否已点赞,SADD成功说明之前没有点赞
+        String key = COMMENT_LIKED_KEY + id;
+        String userId = UserHolder.getUser().getId().toString();
+        Long added = stringRedisTemplate.opsForSet().add(key, userId);
+        if (added != null && added > 0) {
+            //2.未点赞,点赞数+1,由计数器服务批量写回数据库
+            counterService.increment(CounterType.COMMENT_LIKED, id);
+        } else {
+            //3.已点赞,取消点赞,点赞数-1
+            Long removed = stringRedisTemplate.opsForSet().remove(key, userId);
+            if (removed != null && removed > 0) {
+                counterService.add(CounterType.COMMENT_LIKED, id, -1);
+            }
+        }
+        //4.删除第一页评论的缓存
+        cacheInvalidator.invalidateBlogComments(comment.getBlogId());
+        return Result.ok();
+    }
+
+    /**
+     * 点赞数写入数据库后，缓存中的点赞数已过期，删除这些评论所在笔记的第一页评论缓存
+     */
+    @EventListener
+    public void onCounterFlushed(CounterFlushedEvent event) {
+        if (event.getType() != CounterType.COMMENT_LIKED) {
+            return;
+        }
+        Set<Long> blogIds = query().select("DISTINCT blog_id").in("id", event.getIds()).list().stream()
+                .map(BlogComments::getBlogId)
+                .collect(Collectors.toSet());
+        blogIds.forEach(cacheInvalidator::invalidateBlogComments);
+    }
 }
@@ -1,11 +1,32 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
+import com.hmdp.service.IImageService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +38,174 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private CounterService counterService;
+
+    @Resource
+    private IImageService imageService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public Result saveBlog(Blog blog) {
+        List<String> images = imageNames(blog.getImages());
+        if (images.size() > SystemConstants.BLOG_MAX_IMAGES) {
+            return Result.fail("最多上传" + SystemConstants.BLOG_MAX_IMAGES + "张图片");
+        }
+        //1.保存笔记
+        UserDTO user = UserHolder.getUser();
+        blog.setId(null);
+        blog.setUserId(user.getId());
+        blog.setImages(String.join(",", images));
+        blog.setLiked(0);
+        blog.setComments(0);
+        save(blog);
+        //2.记录笔记对图片的引用,笔记删除前图片不会被上传者删除;有图片不存在时删除笔记
+        if (!imageService.referenceBlogImages(blog.getId(), images)) {
+            removeById(blog.getId());
+            return Result.fail("图片不存在");
+        }
+        //3.探店笔记计入店铺的评论数
+        counterService.increment(CounterType.SHOP_COMMENTS, blog.getShopId());
+        return Result.ok(blog.getId());
+    }
+
+    @Override
+    public Result deleteBlog(Long id) {
+        Blog blog = getById(id);
+        if (blog == null) {
+            return Result.fail("笔记不存在");
+        }
+        if (!blog.getUserId().equals(UserHolder.getUser().getId())) {
+            return Result.fail("只能删除自己的笔记");
+        }
+        //1.删除笔记
+        removeById(id);
+        //2.释放笔记对图片的引用,没有其他引用的图片被删除
+        imageService.releaseBlogImages(id, imageNames(blog.getImages()));
+        counterService.add(CounterType.SHOP_COMMENTS, blog.getShopId(), -1);
+        return Result.ok();
+    }
+
+    @Override
+    public Result likeBlog(Long id) {
+        if (getById(id) == null) {
+            return Result.fail("笔记不存在");
+        }
+        //1.判断当前用户是否已点赞,SADD成功说明之前没有点赞
+        String key = BLOG_LIKED_KEY + id;
+        String userId = UserHolder.getUser().getId().toString();
+        Long added = stringRedisTemplate.opsForSet().add(key, userId);
+        if (added != null && added > 0) {
+            //2.未点赞,点赞数+1,由计数器服务批量写回数据库
+            counterService.increment(CounterType.BLOG_LIKED, id);
+        } else {
+            //3.已点赞,取消点赞,点赞数-1
+            Long removed = stringRedisTemplate.opsForSet().remove(key, userId);
+            if (removed != null && removed > 0) {
+                counterService.add(CounterType.BLOG_LIKED, id, -1);
+            }
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 笔记的图片以逗号分隔，去掉空白和重复的名称
+     */
+    private static List<String> imageNames(String images) {
+        return StrUtil.split(StrUtil.nullToEmpty(images), ',', true, true).stream()
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Result queryHotBlog(Integer current, String cursor) {
+        current = Math.max(current, 1);
+        List<Blog> records;
+        String nextCursor = null;
+        if (cursor == null) {
+            //1.没有游标,按页码分页查询,不需要查询总数
+            records = query()
+                    .orderByDesc("liked", "id")
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false))
+                    .getRecords();
+        } else {
+            //2.有游标,查询排在上一页最后一条(liked, id)之后的数据
+            long[] last;
+            try {
+                last = CursorUtils.decode(cursor, 2);
+            } catch (IllegalArgumentException e) {
+                return Result.fail("无效的分页游标");
+            }
+            // liked <= ? AND (liked < ? OR id < ?)，保证可以走(liked, id)索引的范围扫描
+            records = query()
+                    .le(last != null, "liked", last == null ? null : last[0])
+                    .and(last != null, w -> w.lt("liked", last[0]).or().lt("id", last[1]))
+                    .orderByDesc("liked", "id")
+                    .page(new Page<>(1, SystemConstants.MAX_PAGE_SIZE, false))
+                    .getRecords();
+            if (records.size() == SystemConstants.MAX_PAGE_SIZE) {
+                Blog lastBlog = records.get(records.size() - 1);
+                int liked = lastBlog.getLiked() == null ? 0 : lastBlog.getLiked();
+                nextCursor = CursorUtils.encode(liked, lastBlog.getId());
+            }
+        }
+        //3.加上尚未写入数据库的点赞数和评论数,两种计数一次Redis往返
+        List<Long> ids = records.stream().map(Blog::getId).collect(Collectors.toList());
+        Map<CounterType, Map<Long, Long>> pending = counterService.pending(
+                Arrays.asList(CounterType.BLOG_LIKED, CounterType.BLOG_COMMENTS), ids);
+        Map<Long, Long> pendingLiked = pending.get(CounterType.BLOG_LIKED);
+        Map<Long, Long> pendingComments = pending.get(CounterType.BLOG_COMMENTS);
+        records.forEach(blog -> {
+            blog.setLiked((int) ((blog.getLiked() == null ? 0 : blog.getLiked()) + pendingLiked.get(blog.getId())));
+            blog.setComments((int) ((blog.getComments() == null ? 0 : blog.getComments())
+                    + pendingComments.get(blog.getId())));
+        });
+        //4.一次查询所有作者
+        Map<Long, UserDTO> users = userService.queryUserDTOs(
+                records.stream().map(Blog::getUserId).collect(Collectors.toSet()));
+        records.forEach(blog -> {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        });
+        return cursor == null ? Result.ok(records) : Result.ok(new CursorResult(records, nextCursor));
+    }
+
+    @Override
+    public Result queryMyBlog(Integer current, String cursor) {
+        current = Math.max(current, 1);
+        // 获取登录用户
+        UserDTO user = UserHolder.getUser();
+        //1.没有游标,按页码分页查询,不需要查询总数
+        if (cursor == null) {
+            Page<Blog> page = query()
+                    .eq("user_id", user.getId())
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false));
+            return Result.ok(page.getRecords());
+        }
+        //2.有游标,按id倒序,从上一页最后一条之前开始查询
+        long[] last;
+        try {
+            last = CursorUtils.decode(cursor, 1);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的分页游标");
+        }
+        Long lastId = last == null ? null : last[0];
+        List<Blog> records = query()
+                .eq("user_id", user.getId())
+                .lt(lastId != null, "id", lastId)
+                .orderByDesc("id")
+                .page(new Page<>(1, SystemConstants.MAX_PAGE_SIZE, false))
+                .getRecords();
+        String nextCursor = records.size() < SystemConstants.MAX_PAGE_SIZE
+                ? null : CursorUtils.encode(records.get(records.size() - 1).getId());
+        return Result.ok(new CursorResult(records, nextCursor));
+    }
 }
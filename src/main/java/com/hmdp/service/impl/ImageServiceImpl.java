@@ -0,0 +1,349 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.img.ImgUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.service.IImageService;
+import com.hmdp.utils.ImageFileCache;
+import com.hmdp.utils.ImageStorage;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.IMAGE_REF_KEY;
+
+/**
+ * <p>
+ *  图片上传服务实现类，原图写入后立即返回，缩略图在后台线程池中生成。
+ *  图片按内容的SHA-256命名，相同的图片只存一份；Redis的img:ref:{图片名称}记录每个用户上传该图片的次数
+ *  和使用该图片的笔记(blog:{笔记id})，用户只能释放自己的引用，所有用户和笔记的引用都释放后才删除文件
+ * </p>
+ */
+@Slf4j
+@Service
+public class ImageServiceImpl implements IImageService {
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+
+    /**
+     * 识别图片类型需要读取的文件头字节数
+     */
+    private static final int IMAGE_HEADER_SIZE = 12;
+    /**
+     * 笔记对图片的引用在img:ref:{图片名称}中的字段前缀，后面是笔记id
+     */
+    private static final String BLOG_REF_FIELD = "blog:";
+    /**
+     * image-release.lua的返回值，图片没有任何引用记录
+     */
+    private static final long NOT_REFERENCED = -2;
+
+    static {
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("image-release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 生成缩略图的线程池，队列有界，队列满时丢弃任务，只影响缩略图，不影响上传
+     */
+    private final ThreadPoolExecutor thumbnailExecutor = new ThreadPoolExecutor(
+            2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(200),
+            ThreadFactoryBuilder.create().setNamePrefix("thumbnail-").setDaemon(true).build());
+
+    @Resource
+    private ImageStorage imageStorage;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ImageFileCache imageFileCache;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Override
+    public Result uploadBlogImage(MultipartFile image) {
+        String originalSuffix = StrUtil.subAfter(image.getOriginalFilename(), ".", true);
+        if (StrUtil.isNotEmpty(originalSuffix) && !SystemConstants.IMAGE_SUFFIXES.contains(originalSuffix.toLowerCase())) {
+            return Result.fail("只支持jpg、png、gif、webp格式的图片");
+        }
+        //1.按文件头识别图片类型,扩展名只由文件内容决定,不是允许的图片类型时不写入
+        String suffix;
+        String staged;
+        MessageDigest digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        try (InputStream in = new BufferedInputStream(image.getInputStream())) {
+            suffix = imageType(in);
+            if (suffix == null) {
+                return Result.fail("只支持jpg、png、gif、webp格式的图片");
+            }
+            //2.写入暂存区的同时计算内容的SHA-256,不再读第二遍
+            staged = imageStorage.stage(new DigestInputStream(in, digest));
+        } catch (IOException e) {
+            throw new RuntimeException("文件上传失败", e);
+        }
+        String sha256 = HexUtil.encodeHexStr(digest.digest());
+        String fileName = createFileName(sha256, suffix);
+        //3.先增加当前用户的引用计数,再发布文件,保证并发删除时能看到这次引用
+        String userId = UserHolder.getUser().getId().toString();
+        stringRedisTemplate.opsForHash().increment(IMAGE_REF_KEY + fileName, userId, 1);
+        try {
+            //4.相同内容的图片已存在,丢弃临时文件,直接返回已有路径
+            if (!imageStorage.publish(staged, fileName)) {
+                imageStorage.discard(staged);
+                log.debug("文件已存在，{}", fileName);
+                return Result.ok(fileName);
+            }
+        } catch (IOException | RuntimeException e) {
+            //5.发布失败,撤销这次引用,没有其他引用时不会留下计数
+            release(fileName, userId);
+            discardQuietly(staged);
+            throw new RuntimeException("文件上传失败", e);
+        }
+        //6.新图片,异步生成缩略图
+        try {
+            thumbnailExecutor.execute(() -> createThumbnails(fileName));
+        } catch (RejectedExecutionException e) {
+            log.warn("缩略图任务队列已满，跳过{}", fileName);
+        }
+        log.debug("文件上传成功，{}", fileName);
+        return Result.ok(fileName);
+    }
+
+    @Override
+    public Result deleteBlogImage(String name) {
+        try {
+            //1.释放当前用户的一次引用,仍被引用时保留文件
+            long count = release(name, UserHolder.getUser().getId().toString());
+            if (count == NOT_REFERENCED && isLegacyImage(name)) {
+                //2.引用计数之前上传的旧图片没有引用记录,没有笔记使用时可以删除
+                if (!imageStorage.exists(name)) {
+                    return Result.fail("图片不存在");
+                }
+                if (blogMapper.selectCount(new QueryWrapper<Blog>().like("images", name)) > 0) {
+                    return Result.fail("图片正在被笔记使用");
+                }
+                removeFile(name);
+                return Result.ok();
+            }
+            if (count < 0) {
+                return Result.fail("图片不存在");
+            }
+            if (count == 0) {
+                removeFile(name);
+            }
+        } catch (IllegalArgumentException e) {
+            return Result.fail("错误的文件名称");
+        } catch (IOException e) {
+            throw new RuntimeException("文件删除失败", e);
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public boolean referenceBlogImages(Long blogId, List<String> names) {
+        if (names.isEmpty()) {
+            return true;
+        }
+        //1.先记录笔记的引用,再确认文件存在:与删除的顺序相反,并发删除移走文件后会看到这次引用并恢复文件
+        String field = BLOG_REF_FIELD + blogId;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            names.forEach(name -> conn.hSet(IMAGE_REF_KEY + name, field, "1"));
+            return null;
+        });
+        //2.有图片不存在,撤销这篇笔记的全部引用
+        try {
+            for (String name : names) {
+                if (!imageStorage.exists(name)) {
+                    releaseBlogImages(blogId, names);
+                    return false;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            releaseBlogImages(blogId, names);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseBlogImages(Long blogId, List<String> names) {
+        String field = BLOG_REF_FIELD + blogId;
+        for (String name : names) {
+            try {
+                if (release(name, field) == 0) {
+                    removeFile(name);
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                log.error("释放笔记{}的图片{}失败", blogId, name, e);
+            }
+        }
+    }
+
+    private void discardQuietly(String staged) {
+        try {
+            imageStorage.discard(staged);
+        } catch (IOException | RuntimeException e) {
+            log.warn("删除暂存文件失败，{}", staged, e);
+        }
+    }
+
+    /**
+     * 释放一个引用(用户id或blog:{笔记id})
+     * @return 引用的个数，该字段没有引用时返回-1，图片没有任何引用记录时返回NOT_REFERENCED
+     */
+    private long release(String name, String field) {
+        Long count = stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(IMAGE_REF_KEY + name), field);
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * 删除已没有引用的图片和缩略图
+     */
+    private void removeFile(String name) throws IOException {
+        //1.先把文件移走,此后的上传会重新发布文件
+        String trash = name + ".deleting";
+        if (!imageStorage.move(name, trash)) {
+            return;
+        }
+        imageFileCache.invalidate(name);
+        //2.移走之前有新的引用,恢复文件;恢复失败说明新的上传已重新发布
+        boolean referenced = Boolean.TRUE.equals(stringRedisTemplate.hasKey(IMAGE_REF_KEY + name));
+        if (referenced && imageStorage.move(trash, name)) {
+            return;
+        }
+        imageStorage.delete(trash);
+        for (int width : SystemConstants.IMAGE_THUMBNAIL_WIDTHS) {
+            imageStorage.delete(thumbnailName(name, width));
+            imageFileCache.invalidate(thumbnailName(name, width));
+        }
+    }
+
+    /**
+     * 按内容命名之前的图片，文件名是UUID而不是64位的SHA-256
+     */
+    static boolean isLegacyImage(String name) {
+        String baseName = StrUtil.subBefore(StrUtil.subAfter(name, "/", true), ".", true);
+        return name.startsWith("/blogs/") && !baseName.matches("[0-9a-f]{64}");
+    }
+
+    /**
+     * 按配置的宽度等比缩放生成缩略图，原图比目标宽度小时不生成
+     */
+    private void createThumbnails(String name) {
+        String suffix = StrUtil.subAfter(name, ".", true);
+        try {
+            //1.读取原图
+            BufferedImage source;
+            try (InputStream in = imageStorage.open(name)) {
+                source = ImgUtil.read(in);
+            }
+            if (source == null) {
+                return;
+            }
+            //2.逐个宽度生成缩略图
+            for (int width : SystemConstants.IMAGE_THUMBNAIL_WIDTHS) {
+                if (source.getWidth() <= width) {
+                    continue;
+                }
+                int height = Math.max(1, source.getHeight() * width / source.getWidth());
+                Image scaled = ImgUtil.scale(source, width, height);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImgUtil.write(scaled, suffix, out);
+                imageStorage.store(thumbnailName(name, width), new ByteArrayInputStream(out.toByteArray()));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("生成缩略图失败，{}", name, e);
+        }
+    }
+
+    /**
+     * 按文件头(magic number)识别图片类型，读取后流回到开头
+     * @return 扩展名，不是jpg、png、gif、webp时返回null
+     */
+    static String imageType(InputStream in) throws IOException {
+        byte[] header = new byte[IMAGE_HEADER_SIZE];
+        in.mark(IMAGE_HEADER_SIZE);
+        int n = 0;
+        for (int r; n < header.length && (r = in.read(header, n, header.length - n)) > 0; ) {
+            n += r;
+        }
+        in.reset();
+        if (n >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (n >= 8 && startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        }
+        if (n >= 6 && (startsWith(header, 0, 'G', 'I', 'F', '8', '7', 'a') || startsWith(header, 0, 'G', 'I', 'F', '8', '9', 'a'))) {
+            return "gif";
+        }
+        if (n >= 12 && startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int... prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[offset + i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 缩略图名称，例如/blogs/1/2/xxx.jpg的200宽缩略图为/blogs/1/2/xxx_200.jpg
+     */
+    static String thumbnailName(String name, int width) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name + "_" + width : name.substring(0, dot) + "_" + width + name.substring(dot);
+    }
+
+    /**
+     * 按内容的SHA-256生成文件名，前两位十六进制字符作为两级目录，例如/blogs/a/3/a3f0...e1.jpg
+     */
+    public static String createFileName(String sha256, String suffix) {
+        return StrUtil.format("/blogs/{}/{}/{}.{}", sha256.charAt(0), sha256.charAt(1), sha256, suffix);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        thumbnailExecutor.shutdown();
+    }
+}
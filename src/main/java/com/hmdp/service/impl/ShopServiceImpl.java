@@ -1,11 +1,41 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidation;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.CounterFlushedEvent;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.ShopSearchIndex;
+import com.hmdp.utils.SystemConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VERSION_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +44,203 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
+    /**
+     * 启动时分批加载店铺到搜索索引，每批的数量
+     */
+    private static final int INDEX_BATCH_SIZE = 1000;
+
+    @Resource
+    private ShopSearchIndex shopSearchIndex;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    @Resource
+    private CounterService counterService;
+
+    /**
+     * 按id分批加载全部店铺，建立搜索索引
+     */
+    @PostConstruct
+    public void initSearchIndex() {
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Shop> shops = query()
+                    .select("id", "name", "area", "address")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("limit " + INDEX_BATCH_SIZE)
+                    .list();
+            shops.forEach(shopSearchIndex::index);
+            count += shops.size();
+            if (shops.size() < INDEX_BATCH_SIZE) {
+                break;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+        log.debug("店铺搜索索引加载完成，共{}家店铺", count);
+    }
+
+    @Override
+    public Result queryById(Long id) {
+        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, id, Shop.class,
+                this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        if (shop == null) {
+            return Result.fail("店铺不存在");
+        }
+        addPendingCounters(Collections.singletonList(shop));
+        return Result.ok(shop);
+    }
+
+    @Override
+    public void saveShop(Shop shop) {
+        //1.写入数据库
+        save(shop);
+        //2.该id之前可能被查询过,删除缓存的空值,并通知各节点写入搜索索引
+        cacheInvalidator.invalidateShop(shop.getId());
+    }
+
+    @Override
+    public Result updateShop(Shop shop) {
+        Long id = shop.getId();
+        if (id == null) {
+            return Result.fail("店铺id不能为空");
+        }
+        //1.更新数据库
+        updateById(shop);
+        //2.增加版本号并删除缓存,延迟后再删除一次,各节点重新查询后更新搜索索引
+        cacheInvalidator.invalidateShop(id);
+        return Result.ok();
+    }
+
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, String cursor) {
+        current = Math.max(current, 1);
+        //1.没有游标,按页码分页查询,不需要查询总数
+        if (cursor == null) {
+            Page<Shop> page = query()
+                    .eq("type_id", typeId)
+                    .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE, false));
+            return Result.ok(addPendingCounters(page.getRecords()));
+        }
+        //2.有游标,从上一页最后一个店铺的id之后开始查询
+        long[] last;
+        try {
+            last = CursorUtils.decode(cursor, 1);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的分页游标");
+        }
+        Long lastId = last == null ? null : last[0];
+        List<Shop> shops = query()
+                .eq("type_id", typeId)
+                .gt(lastId != null, "id", lastId)
+                .orderByAsc("id")
+                .page(new Page<>(1, SystemConstants.DEFAULT_PAGE_SIZE, false))
+                .getRecords();
+        //3.不足一页说明没有下一页
+        String nextCursor = shops.size() < SystemConstants.DEFAULT_PAGE_SIZE
+                ? null : CursorUtils.encode(shops.get(shops.size() - 1).getId());
+        return Result.ok(new CursorResult(addPendingCounters(shops), nextCursor));
+    }
+
+    @Override
+    public Result queryShopByName(String name, Integer current, String cursor) {
+        current = Math.max(current, 1);
+        long[] last;
+        try {
+            last = CursorUtils.decode(cursor, 2);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的分页游标");
+        }
+        //1.没有关键字,直接分页查询,不需要查询总数
+        if (StrUtil.isBlank(name)) {
+            if (cursor == null) {
+                Page<Shop> page = query().page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false));
+                return Result.ok(addPendingCounters(page.getRecords()));
+            }
+            Long lastId = last == null ? null : last[1];
+            List<Shop> shops = query()
+                    .gt(lastId != null, "id", lastId)
+                    .orderByAsc("id")
+                    .page(new Page<>(1, SystemConstants.MAX_PAGE_SIZE, false))
+                    .getRecords();
+            String nextCursor = shops.size() < SystemConstants.MAX_PAGE_SIZE
+                    ? null : CursorUtils.encode(0, shops.get(shops.size() - 1).getId());
+            return Result.ok(new CursorResult(addPendingCounters(shops), nextCursor));
+        }
+        //2.没有游标,从搜索索引查询当前页的店铺id
+        if (cursor == null) {
+            int from = (int) Math.min((long) (current - 1) * SystemConstants.MAX_PAGE_SIZE, Integer.MAX_VALUE);
+            List<Long> ids = shopSearchIndex.search(name, from, SystemConstants.MAX_PAGE_SIZE);
+            if (ids.isEmpty()) {
+                return Result.ok(Collections.emptyList());
+            }
+            // 根据id查询店铺,并按相关度排序
+            return Result.ok(listInOrder(ids));
+        }
+        //3.有游标,从上一页最后一个店铺的(得分, id)之后开始查询
+        List<Map.Entry<Long, Integer>> hits = last == null
+                ? shopSearchIndex.searchAfter(name, null, null, SystemConstants.MAX_PAGE_SIZE)
+                : shopSearchIndex.searchAfter(name, (int) last[0], last[1], SystemConstants.MAX_PAGE_SIZE);
+        if (hits.isEmpty()) {
+            return Result.ok(new CursorResult(Collections.emptyList(), null));
+        }
+        List<Long> ids = hits.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        Map.Entry<Long, Integer> lastHit = hits.get(hits.size() - 1);
+        String nextCursor = hits.size() < SystemConstants.MAX_PAGE_SIZE
+                ? null : CursorUtils.encode(lastHit.getValue(), lastHit.getKey());
+        return Result.ok(new CursorResult(listInOrder(ids), nextCursor));
+    }
+
+    /**
+     * 根据id批量查询店铺，结果按照id的顺序排列。与查询单个店铺共用缓存，一次MGET，未命中的一次查询数据库
+     */
+    private List<Shop> listInOrder(List<Long> ids) {
+        Map<Long, Shop> shopMap = cacheClient.queryBatchWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, ids,
+                Shop.class,
+                missIds -> listByIds(missIds).stream().collect(Collectors.toMap(Shop::getId, Function.identity())),
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        return addPendingCounters(new ArrayList<>(shopMap.values()));
+    }
+
+    /**
+     * 加上尚未写入数据库的销量和评论数，两种计数一次Redis往返
+     */
+    private List<Shop> addPendingCounters(List<Shop> shops) {
+        if (shops.isEmpty()) {
+            return shops;
+        }
+        List<Long> ids = shops.stream().map(Shop::getId).collect(Collectors.toList());
+        Map<CounterType, Map<Long, Long>> pending = counterService.pending(
+                Arrays.asList(CounterType.SHOP_SOLD, CounterType.SHOP_COMMENTS), ids);
+        Map<Long, Long> pendingSold = pending.get(CounterType.SHOP_SOLD);
+        Map<Long, Long> pendingComments = pending.get(CounterType.SHOP_COMMENTS);
+        shops.forEach(shop -> {
+            shop.setSold((int) ((shop.getSold() == null ? 0 : shop.getSold()) + pendingSold.get(shop.getId())));
+            shop.setComments((int) ((shop.getComments() == null ? 0 : shop.getComments())
+                    + pendingComments.get(shop.getId())));
+        });
+        return shops;
+    }
+
+    /**
+     * 销量、评论数写入数据库后，缓存中的店铺详情已过期，删除缓存
+     */
+    @EventListener
+    public void onCounterFlushed(CounterFlushedEvent event) {
+        if (event.getType() != CounterType.SHOP_SOLD && event.getType() != CounterType.SHOP_COMMENTS) {
+            return;
+        }
+        CacheInvalidation invalidation = new CacheInvalidation();
+        event.getIds().forEach(invalidation::addShopCounters);
+        cacheInvalidator.invalidate(invalidation);
+    }
 }
@@ -1,10 +1,25 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.VersionedData;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
 
 /**
  * <p>
@@ -17,4 +32,58 @@ import org.springframework.stereotype.Service;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
+    /**
+     * 本地快照的有效期(秒)，过期后到Redis校验一次版本
+     */
+    private static final long LOCAL_SNAPSHOT_TTL = 60L;
+
+    private static final String LOCAL_CACHE_NAME = "local:shop-type";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile VersionedData<List<ShopType>> snapshot;
+
+    /**
+     * 查询店铺类型列表，优先读本地快照，快照过期后以Redis中的数据为准。
+     * 修改tb_shop_type后由CacheInvalidator删除Redis中的缓存(开启binlog监听时自动删除)，Redis中的缓存最多保存CACHE_SHOP_TYPE_TTL分钟，
+     * 各节点最迟在一个快照有效期后看到新数据
+     */
+    @Override
+    public VersionedData<List<ShopType>> queryTypeList() {
+        VersionedData<List<ShopType>> current = snapshot;
+        if (current != null && current.getExpireTime().isAfter(LocalDateTime.now())) {
+            CacheMetrics.hit(LOCAL_CACHE_NAME);
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.getExpireTime().isAfter(LocalDateTime.now())) {
+                CacheMetrics.hit(LOCAL_CACHE_NAME);
+                return current;
+            }
+            CacheMetrics.miss(LOCAL_CACHE_NAME);
+            //1.从Redis查询类型列表
+            String json = stringRedisTemplate.opsForValue().get(CACHE_SHOP_TYPE_KEY);
+            //2.不存在,查询数据库并写入Redis
+            if (StrUtil.isNotBlank(json)) {
+                CacheMetrics.hit(CACHE_SHOP_TYPE_KEY);
+            } else {
+                CacheMetrics.miss(CACHE_SHOP_TYPE_KEY);
+                List<ShopType> typeList = query().orderByAsc("sort").list();
+                json = JSONUtil.toJsonStr(typeList);
+                stringRedisTemplate.opsForValue().set(CACHE_SHOP_TYPE_KEY, json, CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
+            }
+            //3.以内容摘要作为版本号,各节点计算结果一致
+            String version = DigestUtils.md5DigestAsHex(json.getBytes(StandardCharsets.UTF_8));
+            LocalDateTime expireTime = LocalDateTime.now().plusSeconds(LOCAL_SNAPSHOT_TTL);
+            //4.版本未变,只延长快照有效期
+            if (current != null && current.getVersion().equals(version)) {
+                snapshot = new VersionedData<>(version, current.getData(), expireTime);
+            } else {
+                snapshot = new VersionedData<>(version, JSONUtil.toList(json, ShopType.class), expireTime);
+            }
+            return snapshot;
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.RandomUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
@@ -11,15 +10,21 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RegexUtils;
+import com.hmdp.utils.UserDtoUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
@@ -38,6 +43,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClient cacheClient;
+
     /**
      * 发送手机验证码
      */
@@ -90,15 +98,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         //7.1.生成token作为key
         String token = UUID.randomUUID().toString(true);
         //7.2 将user对象转为Hash存储
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
-        //Map<String, Object> userMap = BeanUtil.beanToMap(userDTO);
-        HashMap<String, Object> userMap = new HashMap<>();
-        userMap.put("id", userDTO.getId().toString());
-        userMap.put("nickName", userDTO.getNickName());
-        userMap.put("icon", userDTO.getIcon());
-        stringRedisTemplate.opsForHash().putAll(LOGIN_USER_KEY + token, userMap);
-        //7.3 设置token有效期
-        stringRedisTemplate.expire(LOGIN_USER_KEY + token, 30, TimeUnit.MINUTES);
+        Map<String, String> userMap = UserDtoUtils.toHash(UserDtoUtils.fromUser(user));
+        //7.3 写入用户和设置token有效期放在一个pipeline中
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hMSet(LOGIN_USER_KEY + token, userMap);
+            conn.expire(LOGIN_USER_KEY + token, TimeUnit.MINUTES.toSeconds(30));
+            return null;
+        });
         //8 返回token
 
         return Result.ok(token);
@@ -113,4 +120,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         this.save(user);
         return user;
     }
+
+    /**
+     * 批量查询用户的公开信息(昵称、头像)，列表中的作者、评论人都通过这里查询，一次MGET
+     */
+    @Override
+    public Map<Long, UserDTO> queryUserDTOs(Collection<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(CACHE_USER_KEY, ids, UserDTO.class,
+                missIds -> listByIds(missIds).stream()
+                        .collect(Collectors.toMap(User::getId, UserDtoUtils::fromUser)),
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
 }
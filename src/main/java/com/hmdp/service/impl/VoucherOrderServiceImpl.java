@@ -1,20 +1,512 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.lang.Snowflake;
+import cn.hutool.core.util.IdUtil;
+import com.hmdp.dto.PaymentDTO;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
+import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.entity.VoucherOrder.*;
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
- *  服务实现类
+ *  秒杀订单服务实现类。订单状态只能按 未支付 -> 已支付 -> 已核销、未支付 -> 已取消、已支付 -> 退款中 -> 已退款 流转，
+ *  每次流转都以当前状态为条件更新，并发的支付和取消只有一个成功。
+ *  用户只能发起支付，由支付渠道的回调(管理接口)确认支付结果后才改为已支付
+ *  下单时订单按支付截止时间加入Redis的ZSet(order:pay-timeout)，超时任务每次领取一批到期的订单取消，不扫描订单表。
+ *  队列成员为"订单id:优惠券id:用户id"，订单没有写入数据库时也能归还库存
  * </p>
  *
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
+    /**
+     * 订单不存在时重新入队的最小间隔
+     */
+    private static final long MIN_REQUEUE_MILLIS = 1000;
+    /**
+     * seckill.lua的返回值，秒杀时间不在Redis中
+     */
+    private static final long SECKILL_TIME_MISSING = 3;
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT;
+
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("seckill-release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+        CLAIM_SCRIPT = new DefaultRedisScript<>();
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("delay-queue-claim.lua"));
+        CLAIM_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private IVoucherService voucherService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CounterService counterService;
+
+    /**
+     * 本类的代理，调用@Transactional方法时经过代理才会开启事务
+     */
+    @Lazy
+    @Resource
+    private IVoucherOrderService self;
+
+    /**
+     * 下单后多少分钟内未支付自动取消
+     */
+    @Value("${hmdp.order.pay-timeout-minutes:15}")
+    private long payTimeoutMinutes;
+
+    /**
+     * 超时任务每次从队列领取的订单数
+     */
+    @Value("${hmdp.order.timeout-batch-size:100}")
+    private int timeoutBatchSize;
+
+    /**
+     * 领取后多少秒内没有处理完(节点宕机)，其他节点可以重新领取
+     */
+    @Value("${hmdp.order.timeout-lease-seconds:60}")
+    private long timeoutLeaseSeconds;
+
+    /**
+     * 超时任务每次最多领取的批数，剩余的订单留到下次，不长时间占用共享的调度线程
+     */
+    @Value("${hmdp.order.timeout-max-batches:10}")
+    private int timeoutMaxBatches;
+
+    /**
+     * 到期的订单在数据库中不存在时，可能是下单的事务还没有提交，超过支付期限该时间后才当作下单失败归还库存
+     */
+    @Value("${hmdp.order.timeout-missing-grace-seconds:300}")
+    private long timeoutMissingGraceSeconds;
+
+    private final Snowflake snowflake = IdUtil.getSnowflake();
+
+    @Override
+    public Result seckillVoucher(Long voucherId) {
+        //1.Redis中检查秒杀时间、扣减库存,同时记录下单的用户,订单加入支付超时队列
+        Long userId = UserHolder.getUser().getId();
+        VoucherOrder order = new VoucherOrder()
+                .setId(snowflake.nextId())
+                .setUserId(userId)
+                .setVoucherId(voucherId)
+                .setStatus(STATUS_UNPAID);
+        Long result = executeSeckill(order);
+        //2.秒杀时间不在Redis中,从数据库读取并写入Redis后重试一次
+        if (result != null && result == SECKILL_TIME_MISSING) {
+            SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+            if (seckillVoucher == null) {
+                return Result.fail("秒杀券不存在");
+            }
+            cacheSeckillTime(seckillVoucher);
+            result = executeSeckill(order);
+        }
+        if (result == null || result == 1) {
+            return Result.fail("库存不足");
+        }
+        if (result == 2) {
+            return Result.fail("不能重复下单");
+        }
+        if (result == SECKILL_TIME_MISSING) {
+            return Result.fail("秒杀券已修改，请重试");
+        }
+        if (result == 4) {
+            return Result.fail("秒杀尚未开始");
+        }
+        if (result == 5) {
+            return Result.fail("秒杀已经结束");
+        }
+        //3.数据库中扣减库存并创建订单,失败时归还Redis中的库存
+        boolean created;
+        try {
+            created = self.createSeckillOrder(order);
+        } catch (RuntimeException e) {
+            releaseStock(order);
+            throw e;
+        }
+        if (!created) {
+            releaseStock(order);
+            return Result.fail("库存不足");
+        }
+        return Result.ok(order.getId());
+    }
+
+    private Long executeSeckill(VoucherOrder order) {
+        long now = System.currentTimeMillis();
+        long deadline = now + TimeUnit.MINUTES.toMillis(payTimeoutMinutes);
+        return stringRedisTemplate.execute(SECKILL_SCRIPT,
+                Arrays.asList(SECKILL_STOCK_KEY + order.getVoucherId(), SECKILL_ORDER_KEY + order.getVoucherId(),
+                        ORDER_PAY_TIMEOUT_KEY, SECKILL_TIME_KEY + order.getVoucherId()),
+                order.getUserId().toString(), timeoutMember(order), String.valueOf(deadline), String.valueOf(now));
+    }
+
+    /**
+     * 秒杀时间写入Redis，下单时不再每次查询数据库。修改时间后由CacheInvalidator删除(两次)，同时设置有效期兜底
+     */
+    private void cacheSeckillTime(SeckillVoucher seckillVoucher) {
+        Map<String, String> time = new HashMap<>();
+        time.put("begin", String.valueOf(toMillis(seckillVoucher.getBeginTime())));
+        time.put("end", String.valueOf(toMillis(seckillVoucher.getEndTime())));
+        String key = SECKILL_TIME_KEY + seckillVoucher.getVoucherId();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hMSet(key, time);
+            conn.expire(key, TimeUnit.MINUTES.toSeconds(SECKILL_TIME_TTL));
+            return null;
+        });
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Override
+    @Transactional
+    public boolean createSeckillOrder(VoucherOrder order) {
+        boolean deducted = seckillVoucherService.update()
+                .setSql("stock = stock - 1")
+                .eq("voucher_id", order.getVoucherId())
+                .gt("stock", 0)
+                .update();
+        return deducted && save(order);
+    }
+
+    @Override
+    public Result pay(Long orderId, Integer payType) {
+        VoucherOrder order = getOwnOrder(orderId);
+        if (order == null) {
+            return Result.fail("订单不存在");
+        }
+        if (!isPayType(payType)) {
+            return Result.fail("不支持的支付方式");
+        }
+        if (order.getStatus() != STATUS_UNPAID) {
+            return Result.fail("订单不是未支付状态");
+        }
+        //1.超过支付期限的订单等待自动取消,不能再支付
+        LocalDateTime deadline = order.getCreateTime().plusMinutes(payTimeoutMinutes);
+        if (deadline.isBefore(LocalDateTime.now())) {
+            return Result.fail("订单已超时");
+        }
+        //2.只返回支付信息,订单在支付渠道回调(paid)后才改为已支付
+        Voucher voucher = voucherService.getById(order.getVoucherId());
+        if (voucher == null) {
+            return Result.fail("优惠券不存在");
+        }
+        return Result.ok(new PaymentDTO(orderId, payType, voucher.getPayValue(), deadline));
+    }
+
+    @Override
+    public Result paid(Long orderId, Integer payType) {
+        if (!isPayType(payType)) {
+            return Result.fail("不支持的支付方式");
+        }
+        //1.以未支付为条件更新,与取消并发时只有一个成功;已扣款但订单已取消时由支付渠道退款
+        boolean paid = update()
+                .set("status", STATUS_PAID)
+                .set("pay_type", payType)
+                .set("pay_time", LocalDateTime.now())
+                .eq("id", orderId)
+                .eq("status", STATUS_UNPAID)
+                .update();
+        if (!paid) {
+            return getById(orderId) == null ? Result.fail("订单不存在") : Result.fail("订单不是未支付状态");
+        }
+        //2.移出支付超时队列,失败时由超时任务发现订单已支付后移出
+        VoucherOrder order = getById(orderId);
+        stringRedisTemplate.opsForZSet().remove(ORDER_PAY_TIMEOUT_KEY, timeoutMember(order));
+        //3.支付成功计入店铺销量
+        addShopSold(order, 1);
+        return Result.ok();
+    }
+
+    @Override
+    public Result use(Long orderId) {
+        return transit(orderId, STATUS_PAID, STATUS_USED, "use_time", "订单不是已支付状态");
+    }
+
+    @Override
+    public Result cancel(Long orderId) {
+        VoucherOrder order = getOwnOrder(orderId);
+        if (order == null) {
+            return Result.fail("订单不存在");
+        }
+        if (!cancelUnpaid(order)) {
+            return Result.fail("订单不是未支付状态");
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result refund(Long orderId) {
+        if (getOwnOrder(orderId) == null) {
+            return Result.fail("订单不存在");
+        }
+        return transit(orderId, STATUS_PAID, STATUS_REFUNDING, null, "订单不是已支付状态");
+    }
+
+    @Override
+    public Result completeRefund(Long orderId) {
+        Result result = transit(orderId, STATUS_REFUNDING, STATUS_REFUNDED, "refund_time", "订单不是退款中状态");
+        //退款完成,从店铺销量中扣除
+        if (result.getSuccess()) {
+            addShopSold(getById(orderId), -1);
+        }
+        return result;
+    }
+
+    /**
+     * 店铺销量由计数器服务批量写回数据库
+     */
+    private void addShopSold(VoucherOrder order, long delta) {
+        Voucher voucher = voucherService.getById(order.getVoucherId());
+        if (voucher != null) {
+            counterService.add(CounterType.SHOP_SOLD, voucher.getShopId(), delta);
+        }
+    }
+
+    /**
+     * 取消超过支付期限的订单：每次从支付超时队列领取一批到期的订单，领取的订单在租期内不会被其他节点重复处理。
+     * 队列按到期时间排序，每次只读取到期的部分，不扫描订单表；每次最多领取timeoutMaxBatches批
+     */
+    @Scheduled(fixedDelayString = "${hmdp.order.timeout-poll-millis:1000}")
+    public void cancelTimeoutOrders() {
+        for (int batch = 0; batch < timeoutMaxBatches; batch++) {
+            //1.领取一批到期的订单
+            @SuppressWarnings("unchecked")
+            List<String> members = stringRedisTemplate.execute(CLAIM_SCRIPT,
+                    Collections.singletonList(ORDER_PAY_TIMEOUT_KEY), String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(timeoutBatchSize), String.valueOf(TimeUnit.SECONDS.toMillis(timeoutLeaseSeconds)));
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+            //2.一次查询这一批订单,逐个取消
+            Map<Long, VoucherOrder> orders = listByIds(members.stream().map(VoucherOrderServiceImpl::orderIdOf)
+                    .collect(Collectors.toList()))
+                    .stream().collect(Collectors.toMap(VoucherOrder::getId, Function.identity()));
+            for (String member : members) {
+                try {
+                    cancelTimeoutOrder(member, orders.get(orderIdOf(member)));
+                } catch (RuntimeException e) {
+                    log.error("取消超时订单{}失败，租期过后重试", member, e);
+                }
+            }
+            if (members.size() < timeoutBatchSize) {
+                return;
+            }
+        }
+    }
+
+    private void cancelTimeoutOrder(String member, VoucherOrder order) {
+        //1.订单不存在,等待可能未提交的下单事务,之后当作下单失败归还库存
+        if (order == null) {
+            cancelMissingOrder(member);
+            return;
+        }
+        //2.未支付,取消并归还库存;与支付并发失败时重新查询状态
+        if (order.getStatus() == STATUS_UNPAID) {
+            if (cancelUnpaid(member, order)) {
+                return;
+            }
+            order = getById(order.getId());
+        }
+        //3.已取消但仍在队列中,说明上次取消后没来得及归还Redis中的库存
+        if (order.getStatus() == STATUS_CANCELLED) {
+            releaseStock(member, order);
+            return;
+        }
+        //4.已支付等状态,移出队列
+        stringRedisTemplate.opsForZSet().remove(ORDER_PAY_TIMEOUT_KEY, member);
+    }
+
+    /**
+     * 到期的订单在数据库中不存在：下单的事务可能还没有提交，宽限期内按退避重新入队；
+     * 超过宽限期后写入一条已取消的订单占住订单id，之后提交的下单事务会因主键冲突回滚，再归还Redis中的库存
+     */
+    private void cancelMissingOrder(String member) {
+        String[] parts = member.split(":");
+        if (parts.length < 3) {
+            // 旧格式的成员只有订单id,无法归还库存
+            log.warn("超时订单{}不存在，移出支付超时队列", member);
+            stringRedisTemplate.opsForZSet().remove(ORDER_PAY_TIMEOUT_KEY, member);
+            return;
+        }
+        VoucherOrder order = new VoucherOrder()
+                .setId(Long.valueOf(parts[0]))
+                .setVoucherId(Long.valueOf(parts[1]))
+                .setUserId(Long.valueOf(parts[2]))
+                .setStatus(STATUS_CANCELLED);
+        //1.宽限期内重新入队,间隔随超时的时间加倍,最后一次正好在宽限期结束时
+        long now = System.currentTimeMillis();
+        long overdue = now - snowflake.getGenerateDateTime(order.getId()) - TimeUnit.MINUTES.toMillis(payTimeoutMinutes);
+        long graceMillis = TimeUnit.SECONDS.toMillis(timeoutMissingGraceSeconds);
+        if (overdue < graceMillis) {
+            long delay = Math.max(MIN_REQUEUE_MILLIS, Math.min(overdue, graceMillis - overdue));
+            stringRedisTemplate.opsForZSet().add(ORDER_PAY_TIMEOUT_KEY, member, now + delay);
+            return;
+        }
+        //2.写入已取消的订单,主键冲突说明下单的事务已经提交,按正常的订单处理
+        try {
+            save(order);
+        } catch (DuplicateKeyException e) {
+            VoucherOrder created = getById(order.getId());
+            if (created != null) {
+                cancelTimeoutOrder(member, created);
+            }
+            return;
+        }
+        //3.下单失败,数据库中的库存没有扣减,只归还Redis中的库存
+        log.warn("超时订单{}没有写入数据库，归还库存", member);
+        releaseStock(member, order);
+    }
+
+    /**
+     * 取消未支付的订单并归还库存：数据库中的订单状态和库存在一个事务中修改，Redis中的库存由脚本归还。
+     * 订单还在支付超时队列中表示Redis中的库存没有归还，两步之间宕机时由超时任务补上
+     * @return 是否取消成功，订单不是未支付状态时返回false
+     */
+    private boolean cancelUnpaid(VoucherOrder order) {
+        return cancelUnpaid(timeoutMember(order), order);
+    }
+
+    private boolean cancelUnpaid(String member, VoucherOrder order) {
+        if (!self.cancelUnpaidOrder(order)) {
+            return false;
+        }
+        releaseStock(member, order);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean cancelUnpaidOrder(VoucherOrder order) {
+        boolean updated = update()
+                .set("status", STATUS_CANCELLED)
+                .eq("id", order.getId())
+                .eq("status", STATUS_UNPAID)
+                .update();
+        if (updated) {
+            seckillVoucherService.update()
+                    .setSql("stock = stock + 1")
+                    .eq("voucher_id", order.getVoucherId())
+                    .update();
+        }
+        return updated;
+    }
+
+    private void releaseStock(VoucherOrder order) {
+        releaseStock(timeoutMember(order), order);
+    }
+
+    /**
+     * 归还Redis中的库存，允许该用户重新下单，订单移出支付超时队列。重复调用只归还一次
+     * @param member 订单在支付超时队列中的成员
+     */
+    private void releaseStock(String member, VoucherOrder order) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT,
+                Arrays.asList(ORDER_PAY_TIMEOUT_KEY, SECKILL_STOCK_KEY + order.getVoucherId(),
+                        SECKILL_ORDER_KEY + order.getVoucherId()),
+                member, order.getUserId().toString());
+    }
+
+    /**
+     * 订单在支付超时队列中的成员
+     */
+    private static String timeoutMember(VoucherOrder order) {
+        return order.getId() + ":" + order.getVoucherId() + ":" + order.getUserId();
+    }
+
+    /**
+     * 支付方式 1：余额支付；2：支付宝；3：微信
+     */
+    private static boolean isPayType(Integer payType) {
+        return payType != null && payType >= 1 && payType <= 3;
+    }
+
+    private static Long orderIdOf(String member) {
+        int end = member.indexOf(':');
+        return Long.valueOf(end < 0 ? member : member.substring(0, end));
+    }
+
+    /**
+     * 以当前状态为条件修改订单状态
+     * @param timeColumn 同时记录当前时间的字段，为null时不记录
+     */
+    private Result transit(Long orderId, int from, int to, String timeColumn, String failMessage) {
+        boolean updated = update()
+                .set("status", to)
+                .set(timeColumn != null, timeColumn, LocalDateTime.now())
+                .eq("id", orderId)
+                .eq("status", from)
+                .update();
+        if (updated) {
+            return Result.ok();
+        }
+        return getById(orderId) == null ? Result.fail("订单不存在") : Result.fail(failMessage);
+    }
+
+    /**
+     * 查询当前用户的订单，不存在或不属于当前用户时返回null
+     */
+    private VoucherOrder getOwnOrder(Long orderId) {
+        VoucherOrder order = getById(orderId);
+        if (order == null || !order.getUserId().equals(UserHolder.getUser().getId())) {
+            return null;
+        }
+        return order;
+    }
 }
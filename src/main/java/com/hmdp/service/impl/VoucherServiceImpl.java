@@ -1,5 +1,8 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
@@ -7,11 +10,19 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidation;
+import com.hmdp.utils.CacheInvalidator;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -27,14 +38,52 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        //1.查询店铺的优惠券信息,优先走缓存
+        List<Voucher> vouchers = cacheClient.queryListWithPassThrough(CACHE_VOUCHER_KEY, shopId, Voucher.class,
+                getBaseMapper()::queryVoucherOfShop, CACHE_VOUCHER_TTL, TimeUnit.MINUTES);
+        //2.缓存中的库存不是实时的,秒杀券的库存从Redis中一次性批量读取
+        List<Voucher> seckillVouchers = vouchers.stream()
+                .filter(voucher -> voucher.getStock() != null)
+                .collect(Collectors.toList());
+        if (seckillVouchers.isEmpty()) {
+            return Result.ok(vouchers);
+        }
+        List<String> keys = seckillVouchers.stream()
+                .map(voucher -> SECKILL_STOCK_KEY + voucher.getId())
+                .collect(Collectors.toList());
+        List<String> stocks = stringRedisTemplate.opsForValue().multiGet(keys);
+        //3.用实时库存覆盖缓存中的库存
+        if (stocks != null) {
+            for (int i = 0; i < seckillVouchers.size(); i++) {
+                String stock = stocks.get(i);
+                if (StrUtil.isNotBlank(stock)) {
+                    seckillVouchers.get(i).setStock(Integer.valueOf(stock));
+                }
+            }
+        }
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    public void addVoucher(Voucher voucher) {
+        // 保存优惠券
+        save(voucher);
+        // 删除店铺的优惠券缓存
+        cacheInvalidator.invalidateVouchersOfShop(voucher.getShopId());
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
@@ -47,5 +96,53 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
+        // 事务提交后保存秒杀库存到Redis,回滚时不会留下数据库中不存在的秒杀券的库存
+        String stock = voucher.getStock().toString();
+        cacheInvalidator.afterCommit(() ->
+                stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(), stock));
+        // 事务提交后删除店铺的优惠券缓存
+        cacheInvalidator.invalidateVouchersOfShop(voucher.getShopId());
+    }
+
+    @Override
+    @Transactional
+    public Result updateVoucher(Voucher voucher) {
+        Long id = voucher.getId();
+        if (id == null) {
+            return Result.fail("优惠券id不能为空");
+        }
+        Voucher old = getById(id);
+        if (old == null) {
+            return Result.fail("优惠券不存在");
+        }
+        //1.更新优惠券,只修改秒杀信息时tb_voucher没有要更新的列,不执行UPDATE
+        boolean voucherChanged = TableInfoHelper.getTableInfo(Voucher.class).getFieldList().stream()
+                .anyMatch(field -> ReflectUtil.getFieldValue(voucher, field.getField()) != null);
+        if (voucherChanged) {
+            updateById(voucher);
+        }
+        //2.秒杀券同步更新秒杀信息
+        boolean seckillChanged = voucher.getStock() != null
+                || voucher.getBeginTime() != null || voucher.getEndTime() != null;
+        if (seckillChanged && seckillVoucherService.getById(id) != null) {
+            SeckillVoucher seckillVoucher = new SeckillVoucher();
+            seckillVoucher.setVoucherId(id);
+            seckillVoucher.setStock(voucher.getStock());
+            seckillVoucher.setBeginTime(voucher.getBeginTime());
+            seckillVoucher.setEndTime(voucher.getEndTime());
+            seckillVoucherService.updateById(seckillVoucher);
+            if (voucher.getStock() != null) {
+                // 事务提交后再覆盖Redis中的库存
+                String stock = voucher.getStock().toString();
+                cacheInvalidator.afterCommit(() -> stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + id, stock));
+            }
+            if (voucher.getBeginTime() != null || voucher.getEndTime() != null) {
+                // 事务提交后删除Redis中的秒杀时间,下单时重新从数据库读取
+                cacheInvalidator.invalidateTwice(new CacheInvalidation().addSeckillTime(id));
+            }
+        }
+        //3.事务提交后删除店铺的优惠券缓存,店铺可能被修改,新旧店铺都要删除
+        cacheInvalidator.invalidateVouchersOfShop(old.getShopId(), voucher.getShopId());
+        return Result.ok();
     }
 }
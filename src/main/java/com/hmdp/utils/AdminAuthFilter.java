@@ -0,0 +1,73 @@
+package com.hmdp.utils;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 管理接口的鉴权：项目中没有管理员角色，运维接口只对持有hmdp.admin.token的调用方开放。
+ * 请求头X-Admin-Token与配置一致才放行，否则返回401；没有配置token时全部拒绝
+ */
+public class AdminAuthFilter extends OncePerRequestFilter {
+
+    public static final String TOKEN_HEADER = "X-Admin-Token";
+
+    private final byte[] token;
+    private final List<String> patterns;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    /**
+     * @param token 管理接口的token，为空时拒绝所有请求
+     * @param patterns 需要鉴权的Ant风格路径模式
+     */
+    public AdminAuthFilter(String token, String... patterns) {
+        this.token = token == null ? new byte[0] : token.getBytes(StandardCharsets.UTF_8);
+        this.patterns = Arrays.asList(patterns);
+    }
+
+    /**
+     * 路径是否需要鉴权
+     */
+    public boolean requiresAdmin(String path) {
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 请求头中的token是否正确，按固定时间比较，不从耗时泄露token
+     */
+    public boolean isAdmin(String header) {
+        return token.length > 0 && header != null
+                && MessageDigest.isEqual(token, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !requiresAdmin(urlPathHelper.getPathWithinApplication(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!isAdmin(request.getHeader(TOKEN_HEADER))) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,152 @@
+package com.hmdp.utils;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.*;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 以从库身份读取MySQL binlog(需要binlog_format=ROW，账号需要REPLICATION SLAVE、REPLICATION CLIENT权限)。
+ * binlog中只有列的序号，列名从information_schema查询，ALTER TABLE后重新查询。
+ * <p>
+ * 从连接时的位置开始读取，不保存位点：节点停止期间的变更不会补发，由缓存的TTL兜底；断线后自动重连
+ */
+@Slf4j
+public class BinlogChangeEventSource implements ChangeEventSource {
+
+    private final BinaryLogClient client;
+    private final DataSource dataSource;
+    private final String database;
+    private final Set<String> tables;
+    private final long connectTimeoutMillis;
+    /**
+     * binlog中的表编号 -> 表名，只记录关注的表
+     */
+    private final Map<Long, String> tableIds = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> columns = new ConcurrentHashMap<>();
+
+    public BinlogChangeEventSource(String host, int port, String username, String password, long serverId,
+                                   String database, Collection<String> tables, DataSource dataSource,
+                                   long connectTimeoutMillis) {
+        this.client = new BinaryLogClient(host, port, username, password);
+        // 同一个MySQL的每个从库(包括每个应用节点)的server-id必须不同
+        this.client.setServerId(serverId);
+        this.database = database;
+        this.tables = new HashSet<>(tables);
+        this.dataSource = dataSource;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    @Override
+    public void start(Consumer<ChangeEvent> listener) {
+        client.registerEventListener(event -> {
+            try {
+                handle(event.getData(), listener);
+            } catch (RuntimeException e) {
+                log.error("处理binlog事件失败: {}", event.getHeader(), e);
+            }
+        });
+        try {
+            client.connect(connectTimeoutMillis);
+        } catch (IOException | TimeoutException e) {
+            throw new IllegalStateException("无法连接MySQL binlog", e);
+        }
+        log.info("开始读取binlog {}:{}", client.getBinlogFilename(), client.getBinlogPosition());
+    }
+
+    @Override
+    public void stop() {
+        try {
+            client.disconnect();
+        } catch (IOException e) {
+            log.warn("断开binlog连接失败", e);
+        }
+    }
+
+    private void handle(EventData data, Consumer<ChangeEvent> listener) {
+        if (data instanceof TableMapEventData) {
+            //1.表编号与表名的对应关系,在每个行事件之前出现
+            TableMapEventData table = (TableMapEventData) data;
+            if (database.equals(table.getDatabase()) && tables.contains(table.getTable())) {
+                tableIds.put(table.getTableId(), table.getTable());
+            }
+        } else if (data instanceof QueryEventData) {
+            //2.表结构可能变化,重新查询列名
+            String sql = ((QueryEventData) data).getSql();
+            if (sql.regionMatches(true, 0, "ALTER", 0, 5)) {
+                columns.clear();
+            }
+        } else if (data instanceof WriteRowsEventData) {
+            WriteRowsEventData rows = (WriteRowsEventData) data;
+            String table = tableIds.get(rows.getTableId());
+            if (table != null) {
+                for (Serializable[] row : rows.getRows()) {
+                    listener.accept(new ChangeEvent(table, ChangeEvent.Type.INSERT, null,
+                            toMap(table, rows.getIncludedColumns(), row)));
+                }
+            }
+        } else if (data instanceof UpdateRowsEventData) {
+            UpdateRowsEventData rows = (UpdateRowsEventData) data;
+            String table = tableIds.get(rows.getTableId());
+            if (table != null) {
+                for (Map.Entry<Serializable[], Serializable[]> row : rows.getRows()) {
+                    listener.accept(new ChangeEvent(table, ChangeEvent.Type.UPDATE,
+                            toMap(table, rows.getIncludedColumnsBeforeUpdate(), row.getKey()),
+                            toMap(table, rows.getIncludedColumns(), row.getValue())));
+                }
+            }
+        } else if (data instanceof DeleteRowsEventData) {
+            DeleteRowsEventData rows = (DeleteRowsEventData) data;
+            String table = tableIds.get(rows.getTableId());
+            if (table != null) {
+                for (Serializable[] row : rows.getRows()) {
+                    listener.accept(new ChangeEvent(table, ChangeEvent.Type.DELETE,
+                            toMap(table, rows.getIncludedColumns(), row), null));
+                }
+            }
+        }
+    }
+
+    /**
+     * binlog_row_image=MINIMAL时行中只有included中的列
+     */
+    private Map<String, Object> toMap(String table, BitSet included, Serializable[] row) {
+        List<String> names = columns.computeIfAbsent(table, this::queryColumns);
+        Map<String, Object> map = new HashMap<>(row.length * 2);
+        int i = 0;
+        for (int column = included.nextSetBit(0); column >= 0 && i < row.length; column = included.nextSetBit(column + 1)) {
+            map.put(column < names.size() ? names.get(column) : "col_" + column, row[i++]);
+        }
+        return map;
+    }
+
+    private List<String> queryColumns(String table) {
+        String sql = "SELECT COLUMN_NAME FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? "
+                + "ORDER BY ORDINAL_POSITION";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, database);
+            statement.setString(2, table);
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+            return names;
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询" + table + "的列名失败", e);
+        }
+    }
+}
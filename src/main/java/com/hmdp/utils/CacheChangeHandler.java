@@ -0,0 +1,146 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 把tb_shop、tb_shop_type、tb_voucher、tb_seckill_voucher、tb_blog、tb_blog_comments的行变更转换为缓存失效。
+ * 变更先在内存中合并去重，每flush-millis毫秒一次DEL，批量更新(如后台SQL)不会产生成千上万条命令。
+ * 每个节点都读取binlog，各自处理Redis和本节点的本地缓存，不再广播。
+ * <p>
+ * 只改计数或库存的更新不处理：笔记的点赞数、评论数由计数器服务定时写回，缓存中的优惠券库存会被Redis中的实时库存覆盖
+ */
+@Slf4j
+public class CacheChangeHandler {
+
+    public static final List<String> TABLES = Arrays.asList("tb_shop", "tb_shop_type", "tb_voucher",
+            "tb_seckill_voucher", "tb_blog", "tb_blog_comments");
+
+    private static final Set<String> BLOG_COUNTER_COLUMNS = new HashSet<>(Arrays.asList("liked", "comments", "update_time"));
+    private static final Set<String> SECKILL_STOCK_COLUMNS = new HashSet<>(Arrays.asList("stock", "update_time"));
+
+    private final ChangeEventSource source;
+    private final CacheInvalidator cacheInvalidator;
+    /**
+     * 优惠券id -> 店铺id，秒杀券的变更需要找到对应的店铺
+     */
+    private final Function<Long, Long> shopOfVoucher;
+    private final long flushMillis;
+    private CacheInvalidation pending = new CacheInvalidation();
+    private ScheduledExecutorService flusher;
+
+    public CacheChangeHandler(ChangeEventSource source, CacheInvalidator cacheInvalidator,
+                              Function<Long, Long> shopOfVoucher, long flushMillis) {
+        this.source = source;
+        this.cacheInvalidator = cacheInvalidator;
+        this.shopOfVoucher = shopOfVoucher;
+        this.flushMillis = flushMillis;
+    }
+
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("cache-change-").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        source.start(this::onChange);
+    }
+
+    public void stop() {
+        source.stop();
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * 把一行变更合并到待处理的失效中
+     */
+    public void onChange(ChangeEvent event) {
+        CacheInvalidation invalidation = toInvalidation(event);
+        if (invalidation.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            pending.merge(invalidation);
+        }
+    }
+
+    /**
+     * 执行已合并的失效
+     */
+    public void flush() {
+        CacheInvalidation batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new CacheInvalidation();
+        }
+        try {
+            cacheInvalidator.invalidateFromBinlog(batch);
+        } catch (RuntimeException e) {
+            // Redis不可用时放回,下次重试
+            synchronized (this) {
+                pending.merge(batch);
+            }
+            log.error("缓存失效执行失败，{}个key稍后重试", batch.getKeys().size(), e);
+        }
+    }
+
+    private CacheInvalidation toInvalidation(ChangeEvent event) {
+        CacheInvalidation invalidation = new CacheInvalidation();
+        switch (event.getTable()) {
+            case "tb_shop":
+                invalidation.addShop(Convert.toLong(event.get("id")));
+                break;
+            case "tb_shop_type":
+                invalidation.addShopTypes();
+                break;
+            case "tb_voucher":
+                //店铺可能被修改,新旧店铺都要删除
+                for (Map<String, Object> row : Arrays.asList(event.getBefore(), event.getAfter())) {
+                    Long shopId = row == null ? null : Convert.toLong(row.get("shop_id"));
+                    if (shopId != null) {
+                        invalidation.addVouchersOfShop(shopId);
+                    }
+                }
+                break;
+            case "tb_seckill_voucher":
+                if (event.getType() == ChangeEvent.Type.UPDATE
+                        && SECKILL_STOCK_COLUMNS.containsAll(event.changedColumns())) {
+                    break;
+                }
+                Long voucherId = Convert.toLong(event.get("voucher_id"));
+                // 开始、结束时间可能被修改,秒杀下单时重新从数据库读取
+                invalidation.addSeckillTime(voucherId);
+                Long shopId = shopOfVoucher.apply(voucherId);
+                if (shopId != null) {
+                    invalidation.addVouchersOfShop(shopId);
+                }
+                break;
+            case "tb_blog":
+                if (event.getType() == ChangeEvent.Type.UPDATE
+                        && BLOG_COUNTER_COLUMNS.containsAll(event.changedColumns())) {
+                    break;
+                }
+                invalidation.addHotBlogs();
+                break;
+            case "tb_blog_comments":
+                Long blogId = Convert.toLong(event.get("blog_id"));
+                if (blogId != null) {
+                    invalidation.addBlogComments(blogId);
+                }
+                break;
+            default:
+        }
+        return invalidation;
+    }
+}
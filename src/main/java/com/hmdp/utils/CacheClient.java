@@ -0,0 +1,391 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.json.JSON;
+import cn.hutool.json.JSONArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
+
+/**
+ * Redis缓存工具类。值的序列化方式由hmdp.cache.serializer选择(json或kryo)，空字节表示数据库中不存在。
+ * <p>
+ * 热点key先查本节点的HotKeyCache，未命中再查Redis。
+ * <p>
+ * 指定了版本号key前缀的查询，在查询数据库之前读取版本号，写入缓存时由Lua脚本确认版本号没有变化；
+ * 查询数据库期间数据被修改(CacheInvalidator增加了版本号)时放弃写入，旧数据不会在删除缓存之后被写回
+ */
+@Slf4j
+@Component
+public class CacheClient {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    static final DefaultRedisScript<Long> SET_IF_VERSION_SCRIPT;
+
+    static {
+        SET_IF_VERSION_SCRIPT = new DefaultRedisScript<>();
+        SET_IF_VERSION_SCRIPT.setLocation(new ClassPathResource("cache-set-if-version.lua"));
+        SET_IF_VERSION_SCRIPT.setResultType(Long.class);
+    }
+
+    private static final byte[] SET_IF_VERSION = SET_IF_VERSION_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisGetBatcher redisGetBatcher;
+    private final RedisSerializer<Object> cacheSerializer;
+    private final HotKeyCache hotKeyCache;
+    /**
+     * 同一个key同时未命中时只有一个线程查询数据库
+     */
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, RedisGetBatcher redisGetBatcher,
+                       RedisSerializer<Object> cacheSerializer, HotKeyCache hotKeyCache) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisGetBatcher = redisGetBatcher;
+        this.cacheSerializer = cacheSerializer;
+        this.hotKeyCache = hotKeyCache;
+    }
+
+    /**
+     * 将任意对象序列化后存储在String类型的key中，并设置TTL
+     */
+    public void set(String key, Object value, Long time, TimeUnit unit) {
+        setRaw(key, cacheSerializer.serialize(value), unit.toSeconds(time));
+    }
+
+    /**
+     * 用一次pipeline批量写入对象，每个key的TTL增加0~10%的随机值，避免批量写入的key同时过期
+     * @param keyPrefix key前缀
+     * @param values id -> 对象
+     */
+    public <R, ID> void setBatch(String keyPrefix, Map<ID, R> values, Long time, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        long seconds = unit.toSeconds(time);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((id, value) -> connection.setEx(rawKey(keyPrefix + id),
+                    seconds + RandomUtil.randomLong(seconds / 10 + 1), cacheSerializer.serialize(value)));
+            return null;
+        });
+    }
+
+    /**
+     * 查询缓存的对象，未命中时查询数据库并写入缓存。数据库中不存在时缓存空值，避免缓存穿透
+     * @param keyPrefix key前缀
+     * @param id 查询参数
+     * @param type 对象类型
+     * @param dbFallback 查询数据库的函数
+     * @return 对象，不存在时返回null
+     */
+    public <R, ID> R queryWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithPassThrough(keyPrefix, null, id, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同上，写入缓存时检查版本号
+     * @param versionKeyPrefix 版本号key前缀，为null时不检查
+     */
+    public <R, ID> R queryWithPassThrough(String keyPrefix, String versionKeyPrefix, ID id, Class<R> type,
+                                          Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        String versionKey = versionKeyPrefix == null ? null : versionKeyPrefix + id;
+        //1.热点key先查本地,再从Redis查询缓存,并发的查询合并为一次MGET
+        byte[] cached = get(key);
+        //2.命中,空值表示数据库中不存在
+        if (cached != null && cached.length == 0) {
+            CacheMetrics.hit(keyPrefix);
+            return null;
+        }
+        R value = toBean(deserialize(key, cached), type);
+        if (value != null) {
+            CacheMetrics.hit(keyPrefix);
+            return value;
+        }
+        //3.未命中,同一个key只有一个线程查询数据库,其余线程等待它的结果
+        CacheMetrics.miss(keyPrefix);
+        return singleFlight.execute(key, () -> {
+            //3.1 之前的加载可能刚写入缓存,再查一次;同时读取版本号,必须在查询数据库之前
+            byte[] latest;
+            byte[] version = null;
+            if (versionKey == null) {
+                latest = getRaw(key);
+            } else {
+                List<byte[]> values = stringRedisTemplate.execute(
+                        (RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKey(key), rawKey(versionKey)));
+                latest = values == null ? null : values.get(0);
+                version = values == null || values.get(1) == null ? EMPTY : values.get(1);
+            }
+            if (latest != null && latest.length == 0) {
+                return null;
+            }
+            R latestValue = toBean(deserialize(key, latest), type);
+            if (latestValue != null) {
+                return latestValue;
+            }
+            R r = dbFallback.apply(id);
+            //4.不存在,缓存空值,TTL较短
+            if (r == null) {
+                setRaw(keyPrefix, key, EMPTY, TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL), versionKey, version);
+                return null;
+            }
+            //5.存在,写入Redis
+            setRaw(keyPrefix, key, cacheSerializer.serialize(r), unit.toSeconds(time), versionKey, version);
+            return r;
+        });
+    }
+
+    /**
+     * 查询缓存的列表，未命中时查询数据库并写入缓存。空列表也会缓存，避免缓存穿透
+     * @param keyPrefix key前缀
+     * @param id 查询参数
+     * @param type 列表元素类型
+     * @param dbFallback 查询数据库的函数
+     */
+    public <R, ID> List<R> queryListWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID, List<R>> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        //1.热点key先查本地,再从Redis查询缓存,并发的查询合并为一次MGET
+        List<R> cached = toList(deserialize(key, get(key)), type);
+        //2.命中,直接返回
+        if (cached != null) {
+            CacheMetrics.hit(keyPrefix);
+            return cached;
+        }
+        //3.未命中,同一个key只有一个线程查询数据库,其余线程等待它的结果
+        CacheMetrics.miss(keyPrefix);
+        return singleFlight.execute(key, () -> {
+            //3.1 之前的加载可能刚写入缓存,再查一次
+            List<R> latest = toList(deserialize(key, getRaw(key)), type);
+            if (latest != null) {
+                return latest;
+            }
+            List<R> list = dbFallback.apply(id);
+            //4.不存在,缓存空列表,TTL较短
+            if (list == null || list.isEmpty()) {
+                this.set(key, new ArrayList<R>(), CACHE_NULL_TTL, TimeUnit.MINUTES);
+                return Collections.<R>emptyList();
+            }
+            //5.存在,写入Redis
+            this.set(key, list, time, unit);
+            return list;
+        });
+    }
+
+    /**
+     * 批量查询缓存的对象：一次MGET查询全部key，未命中的id一次查询数据库，再用一次pipeline写入缓存。
+     * 不论命中多少，Redis最多两次往返、数据库最多一次查询
+     * @param keyPrefix key前缀
+     * @param ids 查询参数
+     * @param type 对象类型
+     * @param dbFallback 批量查询数据库的函数，返回id -> 对象，不存在的id不在结果中
+     * @return id -> 对象，按ids的顺序，不存在的id不在结果中
+     */
+    public <R, ID> Map<ID, R> queryBatchWithPassThrough(String keyPrefix, Collection<ID> ids, Class<R> type,
+            Function<List<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        return queryBatchWithPassThrough(keyPrefix, null, ids, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同上，写入缓存时检查版本号，有未命中时多一次MGET读取版本号
+     * @param versionKeyPrefix 版本号key前缀，为null时不检查
+     */
+    public <R, ID> Map<ID, R> queryBatchWithPassThrough(String keyPrefix, String versionKeyPrefix, Collection<ID> ids,
+            Class<R> type, Function<List<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        List<ID> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (idList.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        //1.热点key先查本地,其余的一次MGET查询
+        long generation = hotKeyCache.generation();
+        List<byte[]> values = new ArrayList<>(idList.size());
+        List<Integer> remote = new ArrayList<>();
+        for (ID id : idList) {
+            byte[] local = hotKeyCache.get(keyPrefix + id);
+            if (local == null) {
+                remote.add(values.size());
+            }
+            values.add(local);
+        }
+        if (!remote.isEmpty()) {
+            byte[][] keys = remote.stream().map(i -> rawKey(keyPrefix + idList.get(i))).toArray(byte[][]::new);
+            List<byte[]> remoteValues = stringRedisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.mGet(keys));
+            for (int i = 0; remoteValues != null && i < remote.size(); i++) {
+                byte[] value = remoteValues.get(i);
+                values.set(remote.get(i), value);
+                if (value != null) {
+                    hotKeyCache.put(keyPrefix + idList.get(remote.get(i)), value, generation);
+                }
+            }
+        }
+        //2.命中的直接解析,空值表示数据库中不存在
+        Map<ID, R> found = new HashMap<>(idList.size());
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            byte[] cached = values.get(i);
+            if (cached != null && cached.length == 0) {
+                CacheMetrics.hit(keyPrefix);
+                continue;
+            }
+            R r = toBean(deserialize(keyPrefix + idList.get(i), cached), type);
+            if (r == null) {
+                CacheMetrics.miss(keyPrefix);
+                misses.add(idList.get(i));
+            } else {
+                CacheMetrics.hit(keyPrefix);
+                found.put(idList.get(i), r);
+            }
+        }
+        //3.未命中的一次查询数据库并写入缓存
+        if (!misses.isEmpty()) {
+            found.putAll(loadBatch(keyPrefix, versionKeyPrefix, misses, dbFallback, time, unit));
+        }
+        //5.按ids的顺序返回
+        Map<ID, R> result = new LinkedHashMap<>(found.size());
+        for (ID id : idList) {
+            R r = found.get(id);
+            if (r != null) {
+                result.put(id, r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量查询数据库并写入缓存，不读取缓存，用于未命中和启动预热。
+     * 查询之前一次MGET读取版本号，一次pipeline按版本号写入，期间被修改的不写入；不存在的缓存空值
+     * @param versionKeyPrefix 版本号key前缀，为null时直接写入
+     * @return 数据库中存在的对象，id -> 对象
+     */
+    public <R, ID> Map<ID, R> loadBatch(String keyPrefix, String versionKeyPrefix, List<ID> ids,
+            Function<List<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        //1.查询数据库之前读取版本号
+        List<byte[]> versions = versionKeyPrefix == null ? null : stringRedisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.mGet(ids.stream()
+                        .map(id -> rawKey(versionKeyPrefix + id)).toArray(byte[][]::new)));
+        Map<ID, R> loaded = dbFallback.apply(ids);
+        //2.一次pipeline写入缓存,有效期加上随机的10%,同一批写入的key不会同时过期
+        long seconds = unit.toSeconds(time);
+        List<Object> written = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < ids.size(); i++) {
+                ID id = ids.get(i);
+                R r = loaded.get(id);
+                byte[] value = r == null ? EMPTY : cacheSerializer.serialize(r);
+                long ttl = r == null ? TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL)
+                        : seconds + RandomUtil.randomLong(seconds / 10 + 1);
+                if (versionKeyPrefix == null) {
+                    connection.setEx(rawKey(keyPrefix + id), ttl, value);
+                } else {
+                    byte[] version = versions == null || versions.get(i) == null ? EMPTY : versions.get(i);
+                    setIfVersion(connection, keyPrefix + id, value, ttl, versionKeyPrefix + id, version);
+                }
+            }
+            return null;
+        });
+        if (versionKeyPrefix != null) {
+            written.stream().filter(w -> Long.valueOf(0).equals(w)).forEach(w -> CacheMetrics.staleWrite(keyPrefix));
+        }
+        return loaded;
+    }
+
+    /**
+     * 热点key先查本地，未命中时从Redis读取(并发的GET合并为MGET)，是热点则写入本地
+     */
+    private byte[] get(String key) {
+        byte[] local = hotKeyCache.get(key);
+        if (local != null) {
+            return local;
+        }
+        long generation = hotKeyCache.generation();
+        byte[] value = redisGetBatcher.get(key);
+        if (value != null) {
+            hotKeyCache.put(key, value, generation);
+        }
+        return value;
+    }
+
+    private byte[] getRaw(String key) {
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey(key)));
+    }
+
+    private void setRaw(String key, byte[] value, long seconds) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.setEx(rawKey(key), seconds, value));
+    }
+
+    /**
+     * 写入缓存，versionKey不为null时只在版本号仍为version时写入
+     */
+    private void setRaw(String keyPrefix, String key, byte[] value, long seconds, String versionKey, byte[] version) {
+        if (versionKey == null) {
+            setRaw(key, value, seconds);
+            return;
+        }
+        Long written = stringRedisTemplate.execute(
+                (RedisCallback<Long>) connection -> setIfVersion(connection, key, value, seconds, versionKey, version));
+        if (Long.valueOf(0).equals(written)) {
+            CacheMetrics.staleWrite(keyPrefix);
+            log.debug("查询数据库期间{}被修改，放弃写入缓存", key);
+        }
+    }
+
+    private static Long setIfVersion(RedisConnection connection, String key, byte[] value, long seconds,
+                                     String versionKey, byte[] version) {
+        return connection.eval(SET_IF_VERSION, ReturnType.INTEGER, 2, rawKey(key), rawKey(versionKey),
+                version, String.valueOf(seconds).getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 反序列化缓存的值，格式不符(切换了序列化方式或实体的字段有变化)时返回null，当作未命中重新加载
+     */
+    private Object deserialize(String key, byte[] bytes) {
+        try {
+            return cacheSerializer.deserialize(bytes);
+        } catch (SerializationException e) {
+            log.debug("缓存{}的格式不符，重新加载", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * JSON反序列化得到JSONObject，按类型转换；Kryo反序列化得到的已经是目标类型
+     */
+    static <R> R toBean(Object value, Class<R> type) {
+        if (value instanceof JSON) {
+            return ((JSON) value).toBean(type);
+        }
+        return type.cast(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R> List<R> toList(Object value, Class<R> type) {
+        if (value instanceof JSONArray) {
+            return ((JSONArray) value).toList(type);
+        }
+        return (List<R>) value;
+    }
+}
@@ -0,0 +1,105 @@
+package com.hmdp.utils;
+
+import lombok.Data;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 一批缓存失效：Redis中要删除的key、要增加的版本号，各节点本地缓存(响应缓存)中要删除的路径，
+ * 以及各节点要重建搜索索引的店铺。
+ * 数据与缓存的对应关系集中在这里，业务代码和binlog监听使用同一套规则
+ */
+@Data
+public class CacheInvalidation {
+
+    private Set<String> keys = new LinkedHashSet<>();
+    private Set<String> paths = new LinkedHashSet<>();
+    /**
+     * 版本号的key，增加后正在查询数据库的线程不能再把旧数据写入缓存
+     */
+    private Set<String> versions = new LinkedHashSet<>();
+    /**
+     * 要从数据库重新读取并更新搜索索引的店铺id
+     */
+    private Set<Long> shops = new LinkedHashSet<>();
+
+    /**
+     * 店铺详情
+     */
+    public CacheInvalidation addShop(Long id) {
+        keys.add(CACHE_SHOP_KEY + id);
+        versions.add(CACHE_SHOP_VERSION_KEY + id);
+        paths.add("/shop/" + id);
+        shops.add(id);
+        return this;
+    }
+
+    /**
+     * 店铺详情中的计数(销量、评论数)，不影响搜索索引
+     */
+    public CacheInvalidation addShopCounters(Long id) {
+        keys.add(CACHE_SHOP_KEY + id);
+        versions.add(CACHE_SHOP_VERSION_KEY + id);
+        paths.add("/shop/" + id);
+        return this;
+    }
+
+    /**
+     * 店铺类型列表
+     */
+    public CacheInvalidation addShopTypes() {
+        keys.add(CACHE_SHOP_TYPE_KEY);
+        paths.add("/shop-type/list");
+        return this;
+    }
+
+    /**
+     * 店铺的优惠券列表
+     */
+    public CacheInvalidation addVouchersOfShop(Long shopId) {
+        keys.add(CACHE_VOUCHER_KEY + shopId);
+        return this;
+    }
+
+    /**
+     * 秒杀券的开始、结束时间
+     */
+    public CacheInvalidation addSeckillTime(Long voucherId) {
+        keys.add(SECKILL_TIME_KEY + voucherId);
+        return this;
+    }
+
+    /**
+     * 笔记第一页的评论
+     */
+    public CacheInvalidation addBlogComments(Long blogId) {
+        keys.add(CACHE_BLOG_COMMENTS_KEY + blogId);
+        return this;
+    }
+
+    /**
+     * 热门笔记
+     */
+    public CacheInvalidation addHotBlogs() {
+        paths.add("/blog/hot");
+        return this;
+    }
+
+    /**
+     * 合并另一批，重复的key只保留一个
+     */
+    public CacheInvalidation merge(CacheInvalidation other) {
+        keys.addAll(other.keys);
+        paths.addAll(other.paths);
+        versions.addAll(other.versions);
+        shops.addAll(other.shops);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty() && paths.isEmpty() && shops.isEmpty();
+    }
+}
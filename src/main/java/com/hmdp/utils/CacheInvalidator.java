@@ -0,0 +1,221 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import io.netty.util.HashedWheelTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_TTL;
+
+/**
+ * 缓存失效总线：一次pipeline增加版本号、删除Redis中的key，再通过pub/sub通知所有节点删除本地缓存。
+ * 本地缓存包括热点key的HotKeyCache、响应缓存和店铺搜索索引。本节点不等待消息，直接删除；消息丢失(节点断开订阅期间)时本地缓存按各自的有效期过期
+ * <p>
+ * 店铺修改后还会延迟再删除一次：版本号的key被淘汰(过期或内存不足)时，
+ * 并发的查询仍可能在第一次删除后写回旧数据，由第二次删除清理
+ * <p>
+ * 在事务中调用时等到事务提交后才执行，否则提交前的查询仍读到旧数据并写回缓存；事务回滚时不执行
+ */
+@Slf4j
+@Component
+public class CacheInvalidator implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ResponseCache responseCache;
+
+    @Resource
+    private HotKeyCache hotKeyCache;
+
+    @Resource
+    private ShopSearchIndex shopSearchIndex;
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    /**
+     * 第二次删除的延迟，应大于一次查询数据库并写入缓存的耗时，0表示不延迟删除
+     */
+    @Value("${hmdp.cache.double-delete-delay-ms:1000}")
+    private long doubleDeleteDelayMillis;
+
+    /**
+     * 延迟删除只需要百毫秒级的精度，时间轮添加任务为O(1)，大量修改时不会像ScheduledThreadPoolExecutor那样维护堆
+     */
+    private final HashedWheelTimer delayedDeleteTimer = new HashedWheelTimer(
+            ThreadFactoryBuilder.create().setNamePrefix("cache-delayed-delete-").setDaemon(true).build(),
+            100, TimeUnit.MILLISECONDS);
+
+    /**
+     * 店铺修改后删除缓存，并延迟再删除一次
+     */
+    public void invalidateShop(Long id) {
+        invalidateTwice(new CacheInvalidation().addShop(id));
+    }
+
+    public void invalidateVouchersOfShop(Long... shopIds) {
+        CacheInvalidation invalidation = new CacheInvalidation();
+        for (Long shopId : shopIds) {
+            if (shopId != null) {
+                invalidation.addVouchersOfShop(shopId);
+            }
+        }
+        invalidate(invalidation);
+    }
+
+    public void invalidateBlogComments(Long blogId) {
+        invalidate(new CacheInvalidation().addBlogComments(blogId));
+    }
+
+    /**
+     * 立即失效，doubleDeleteDelayMillis后再删除一次缓存。第二次不再增加版本号，
+     * 否则第一次删除之后开始、读到的已经是新数据的查询也会被拒绝写入
+     */
+    public void invalidateTwice(CacheInvalidation invalidation) {
+        if (invalidation.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            doInvalidate(invalidation, true);
+            scheduleSecondDelete(invalidation);
+        });
+    }
+
+    public void invalidate(CacheInvalidation invalidation) {
+        if (invalidation.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> doInvalidate(invalidation, true));
+    }
+
+    /**
+     * binlog中的变更：每个节点都读取binlog，各自删除Redis中的key和本节点的本地缓存，不广播。
+     * 每个节点再广播一次会让一次变更产生N²次本地失效
+     */
+    public void invalidateFromBinlog(CacheInvalidation invalidation) {
+        if (invalidation.isEmpty()) {
+            return;
+        }
+        doInvalidate(invalidation, false);
+    }
+
+    /**
+     * 当前线程有事务时注册到事务提交之后执行，否则立即执行。
+     * 业务代码中写Redis的操作(如秒杀库存)也用它等到数据库提交之后，回滚时Redis不会与数据库不一致
+     */
+    public void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    private void scheduleSecondDelete(CacheInvalidation invalidation) {
+        if (doubleDeleteDelayMillis <= 0) {
+            return;
+        }
+        CacheInvalidation second = new CacheInvalidation();
+        second.getKeys().addAll(invalidation.getKeys());
+        second.getPaths().addAll(invalidation.getPaths());
+        delayedDeleteTimer.newTimeout(timeout -> {
+            try {
+                invalidate(second);
+            } catch (RuntimeException e) {
+                log.error("延迟删除缓存失败: {}", second.getKeys(), e);
+            }
+        }, doubleDeleteDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void doInvalidate(CacheInvalidation invalidation, boolean broadcast) {
+        //1.先增加版本号,再删除Redis中的缓存,一次pipeline
+        if (!invalidation.getKeys().isEmpty() || !invalidation.getVersions().isEmpty()) {
+            long versionTtl = TimeUnit.MINUTES.toSeconds(CACHE_VERSION_TTL);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String version : invalidation.getVersions()) {
+                    conn.incr(version);
+                    conn.expire(version, versionTtl);
+                }
+                if (!invalidation.getKeys().isEmpty()) {
+                    conn.del(invalidation.getKeys().toArray(new String[0]));
+                }
+                return null;
+            });
+        }
+        //2.删除本节点的本地缓存,再通知其他节点
+        invalidateLocal(invalidation);
+        if (broadcast) {
+            stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, JSONUtil.toJsonStr(invalidation));
+        }
+    }
+
+    /**
+     * 收到其他节点(以及本节点)发布的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            invalidateLocal(JSONUtil.toBean(new String(message.getBody(), StandardCharsets.UTF_8), CacheInvalidation.class));
+        } catch (RuntimeException e) {
+            log.error("处理缓存失效消息失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        delayedDeleteTimer.stop();
+    }
+
+    private void invalidateLocal(CacheInvalidation invalidation) {
+        hotKeyCache.invalidate(invalidation.getKeys());
+        invalidation.getPaths().forEach(responseCache::invalidate);
+        reindexShops(invalidation.getShops());
+    }
+
+    /**
+     * 修改的请求中可能只有部分字段,从数据库读取最新的店铺后更新搜索索引,已删除的店铺移出索引
+     */
+    private void reindexShops(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                .select("id", "name", "area", "address")
+                .in("id", ids));
+        Set<Long> removed = new HashSet<>(ids);
+        for (Shop shop : shops) {
+            shopSearchIndex.index(shop);
+            removed.remove(shop.getId());
+        }
+        removed.forEach(shopSearchIndex::remove);
+    }
+}
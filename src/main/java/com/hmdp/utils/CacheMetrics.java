@@ -0,0 +1,26 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * 缓存命中统计，指标为cache.gets，按cache和result(hit/miss)区分，命中率 = hit / (hit + miss)。
+ * cache.stale-writes为查询数据库期间数据被修改、放弃写入缓存的次数。
+ * 使用全局注册表，没有启动Spring(基准测试等)时不记录
+ */
+public class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    public static void hit(String cache) {
+        Metrics.counter("cache.gets", "cache", cache, "result", "hit").increment();
+    }
+
+    public static void miss(String cache) {
+        Metrics.counter("cache.gets", "cache", cache, "result", "miss").increment();
+    }
+
+    public static void staleWrite(String cache) {
+        Metrics.counter("cache.stale-writes", "cache", cache).increment();
+    }
+}
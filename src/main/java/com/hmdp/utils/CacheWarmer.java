@@ -0,0 +1,224 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import com.hmdp.mapper.VoucherMapper;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 启动预热：应用启动后在后台并行加载热点数据，完成前readiness探针(cacheWarmup)返回OUT_OF_SERVICE，
+ * 滚动发布时新节点在缓存加载完成后才接收流量。
+ * <ul>
+ *     <li>shops：销量、评分最高的前N家店铺，分批查询，每批读取版本号后一次pipeline按版本号写入</li>
+ *     <li>shopTypes：店铺类型列表，写入Redis和本地快照</li>
+ *     <li>vouchers：上述店铺上架的优惠券，每批店铺一次查询</li>
+ *     <li>seckillStock：未结束的秒杀券库存，SETNX写入，不覆盖Redis中正在扣减的库存</li>
+ * </ul>
+ * 预热失败或超时只记录日志，不阻止节点就绪
+ */
+@Slf4j
+@Component
+public class CacheWarmer {
+
+    public enum State {
+        NOT_STARTED, RUNNING, DONE, FAILED, DISABLED
+    }
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private VoucherMapper voucherMapper;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${hmdp.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${hmdp.warmup.shop-top-n:1000}")
+    private int shopTopN;
+
+    @Value("${hmdp.warmup.batch-size:200}")
+    private int batchSize;
+
+    @Value("${hmdp.warmup.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    /**
+     * 任务名 -> 进度
+     */
+    private final Map<String, Progress> progress = new LinkedHashMap<>();
+    private volatile State state = State.NOT_STARTED;
+    private volatile long startTime;
+    private volatile long endTime;
+
+    public CacheWarmer() {
+        for (String task : Arrays.asList("shops", "shopTypes", "vouchers", "seckillStock")) {
+            progress.put(task, new Progress());
+        }
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        if (!enabled) {
+            state = State.DISABLED;
+            return;
+        }
+        state = State.RUNNING;
+        startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(progress.size(),
+                ThreadFactoryBuilder.create().setNamePrefix("cache-warmup-").setDaemon(true).build());
+        //1.店铺和优惠券、店铺类型、秒杀库存并行加载
+        CompletableFuture<Void> all = CompletableFuture.allOf(
+                CompletableFuture.runAsync(this::warmShopsAndVouchers, executor),
+                CompletableFuture.runAsync(this::warmShopTypes, executor),
+                CompletableFuture.runAsync(this::warmSeckillStock, executor));
+        //2.超时后不再等待,节点照常就绪
+        executor.submit(() -> {
+            try {
+                all.get(timeoutSeconds, TimeUnit.SECONDS);
+                finish(State.DONE);
+            } catch (Exception e) {
+                log.warn("缓存预热未完成，进度{}", progress, e);
+                finish(State.FAILED);
+            } finally {
+                executor.shutdownNow();
+            }
+        });
+    }
+
+    private void finish(State result) {
+        endTime = System.currentTimeMillis();
+        state = result;
+        log.info("缓存预热结束：{}，耗时{}ms，进度{}", result, endTime - startTime, progress);
+    }
+
+    /**
+     * 预热结束(包括失败、超时和未开启)后节点才就绪
+     */
+    public boolean isFinished() {
+        return state != State.NOT_STARTED && state != State.RUNNING;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 已耗时或总耗时(毫秒)
+     */
+    public long getElapsedMillis() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (isFinished() ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * 任务名 -> 已完成/总数
+     */
+    public Map<String, String> getProgress() {
+        Map<String, String> result = new LinkedHashMap<>();
+        progress.forEach((task, p) -> result.put(task, p.toString()));
+        return result;
+    }
+
+    private void warmShopsAndVouchers() {
+        //1.销量、评分最高的店铺id,走(sold, score)索引
+        List<Long> shopIds = shopService.query()
+                .select("id")
+                .orderByDesc("sold", "score")
+                .last("limit " + shopTopN)
+                .list()
+                .stream().map(Shop::getId).collect(Collectors.toList());
+        Progress shopProgress = progress.get("shops");
+        Progress voucherProgress = progress.get("vouchers");
+        shopProgress.total.set(shopIds.size());
+        voucherProgress.total.set(shopIds.size());
+        //2.每批店铺先读取版本号再查询,按版本号写入,与修改并发时不会写回旧数据;再一次查询这些店铺的优惠券
+        for (List<Long> batch : CollUtil.split(shopIds, batchSize)) {
+            cacheClient.loadBatch(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, batch,
+                    ids -> shopService.listByIds(ids).stream()
+                            .collect(Collectors.toMap(Shop::getId, Function.identity())),
+                    CACHE_SHOP_TTL, TimeUnit.MINUTES);
+            shopProgress.done.addAndGet(batch.size());
+            // 没有优惠券的店铺不写入,查询时缓存空列表
+            Map<Long, List<Voucher>> vouchers = voucherMapper.queryVoucherOfShops(batch)
+                    .stream().collect(Collectors.groupingBy(Voucher::getShopId));
+            cacheClient.setBatch(CACHE_VOUCHER_KEY, vouchers, CACHE_VOUCHER_TTL, TimeUnit.MINUTES);
+            voucherProgress.done.addAndGet(batch.size());
+        }
+    }
+
+    private void warmShopTypes() {
+        Progress typeProgress = progress.get("shopTypes");
+        typeProgress.total.set(1);
+        shopTypeService.queryTypeList();
+        typeProgress.done.set(1);
+    }
+
+    private void warmSeckillStock() {
+        //1.未结束的秒杀券,走end_time索引
+        List<SeckillVoucher> vouchers = seckillVoucherService.query()
+                .select("voucher_id", "stock")
+                .gt("end_time", LocalDateTime.now())
+                .list();
+        Progress stockProgress = progress.get("seckillStock");
+        stockProgress.total.set(vouchers.size());
+        //2.SETNX写入,Redis中已有的库存以Redis为准
+        for (List<SeckillVoucher> batch : CollUtil.split(vouchers, batchSize)) {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                batch.forEach(v -> conn.setNX(SECKILL_STOCK_KEY + v.getVoucherId(), v.getStock().toString()));
+                return null;
+            });
+            stockProgress.done.addAndGet(batch.size());
+        }
+    }
+
+    private static class Progress {
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger total = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            return done.get() + "/" + total.get();
+        }
+    }
+}
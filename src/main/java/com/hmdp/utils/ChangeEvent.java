@@ -0,0 +1,49 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.*;
+
+/**
+ * 一行数据的变更，列名 -> 值。新增时before为null，删除时after为null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private String table;
+    private Type type;
+    private Map<String, Object> before;
+    private Map<String, Object> after;
+
+    /**
+     * 取变更后的值，删除时取变更前的值
+     */
+    public Object get(String column) {
+        return after != null ? after.get(column) : before.get(column);
+    }
+
+    /**
+     * 值发生变化的列，新增和删除时为全部列
+     */
+    public Set<String> changedColumns() {
+        if (before == null || after == null) {
+            return (before == null ? after : before).keySet();
+        }
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            // 文本列在binlog中是byte[]
+            if (!Objects.deepEquals(entry.getValue(), before.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,16 @@
+package com.hmdp.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * 数据变更的来源，生产环境为MySQL binlog，测试中用内存实现代替
+ */
+public interface ChangeEventSource {
+
+    /**
+     * 开始接收变更，listener在来源的线程中按提交顺序调用
+     */
+    void start(Consumer<ChangeEvent> listener);
+
+    void stop();
+}
@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * 一批计数写入数据库之后发布，在执行写回的节点上同步处理
+ */
+@Getter
+@AllArgsConstructor
+public class CounterFlushedEvent {
+    private final CounterType type;
+    /**
+     * 数据库中计数已变化的行id
+     */
+    private final Set<Long> ids;
+}
@@ -0,0 +1,271 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.mapper.CounterMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hmdp.utils.RedisConstants.LOCK_COUNTER_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_COUNTER_TTL;
+
+/**
+ * 热点计数器的多级写回：
+ * <ol>
+ *     <li>JVM内：按id分散到LongAdder中累加，每秒通过pipeline的HINCRBY写入Redis的counter:{type}</li>
+ *     <li>Redis：每10秒由一个节点(抢到lock:counter:{type}的节点)把counter:{type}改名为counter:{type}:flushing，
+ *     分批用一条UPDATE ... CASE WHEN写入数据库，每批提交后HDEL对应的字段并续期锁</li>
+ * </ol>
+ * 读取时的计数 = 数据库中的值 + pending()。每批写入数据库后发布CounterFlushedEvent，缓存了数据库中计数的业务据此删除缓存，
+ * 否则缓存的旧值加上已经减少的pending()会少算。
+ * <p>
+ * 宕机时的最大损失：JVM崩溃丢失该节点最近1秒内未写入Redis的增量；Redis宕机的损失取决于持久化配置(AOF everysec为1秒)。
+ * 数据库批次提交后、HDEL之前宕机，重启后该批会再写一次(至多一批重复)；flushing中未处理的增量在下次写回时优先处理，不会丢失
+ */
+@Slf4j
+@Component
+public class CounterService {
+
+    private static final int DB_BATCH_SIZE = 500;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CounterMapper counterMapper;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<CounterType, Buffer> buffers = new ConcurrentHashMap<>();
+
+    public CounterService() {
+        for (CounterType type : CounterType.values()) {
+            buffers.put(type, new Buffer());
+        }
+    }
+
+    /**
+     * 计数加1
+     */
+    public void increment(CounterType type, Long id) {
+        add(type, id, 1);
+    }
+
+    /**
+     * 累加计数，只写JVM内存
+     */
+    public void add(CounterType type, Long id, long delta) {
+        while (true) {
+            Buffer buffer = buffers.get(type);
+            buffer.writers.increment();
+            try {
+                // 写入前缓冲区已被换掉,重新获取
+                if (buffer.retired) {
+                    continue;
+                }
+                buffer.deltas.computeIfAbsent(id, k -> new LongAdder()).add(delta);
+                return;
+            } finally {
+                buffer.writers.decrement();
+            }
+        }
+    }
+
+    /**
+     * 查询尚未写入数据库的增量
+     */
+    public long pending(CounterType type, Long id) {
+        return pending(type, Collections.singletonList(id)).get(id);
+    }
+
+    /**
+     * 批量查询尚未写入数据库的增量
+     * @return id -> 增量
+     */
+    public Map<Long, Long> pending(CounterType type, List<Long> ids) {
+        return pending(Collections.singletonList(type), ids).get(type);
+    }
+
+    /**
+     * 批量查询多种计数尚未写入数据库的增量，JVM内的增量加上Redis中两个Hash的增量，所有类型共用一次Redis往返
+     * @return 计数类型 -> (id -> 增量)
+     */
+    public Map<CounterType, Map<Long, Long>> pending(List<CounterType> types, List<Long> ids) {
+        Map<CounterType, Map<Long, Long>> result = new EnumMap<>(CounterType.class);
+        for (CounterType type : types) {
+            //1.JVM内的增量
+            Map<Long, Long> deltas = new HashMap<>(ids.size());
+            Buffer buffer = buffers.get(type);
+            for (Long id : ids) {
+                LongAdder adder = buffer.deltas.get(id);
+                deltas.put(id, adder == null ? 0L : adder.sum());
+            }
+            result.put(type, deltas);
+        }
+        if (ids.isEmpty()) {
+            return result;
+        }
+        //2.Redis中的增量,每种类型两个Hash,一次pipeline
+        String[] fields = ids.stream().map(String::valueOf).toArray(String[]::new);
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (CounterType type : types) {
+                conn.hMGet(type.key(), fields);
+                conn.hMGet(type.flushingKey(), fields);
+            }
+            return null;
+        });
+        for (int t = 0; t < types.size(); t++) {
+            Map<Long, Long> deltas = result.get(types.get(t));
+            for (Object value : values.subList(t * 2, t * 2 + 2)) {
+                @SuppressWarnings("unchecked")
+                List<String> hashValues = (List<String>) value;
+                for (int i = 0; i < ids.size(); i++) {
+                    String delta = hashValues.get(i);
+                    if (StrUtil.isNotBlank(delta)) {
+                        deltas.merge(ids.get(i), Long.parseLong(delta), Long::sum);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把JVM内的增量写入Redis
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void flushToRedis() {
+        for (CounterType type : CounterType.values()) {
+            //1.换上新的缓冲区,等待正在写旧缓冲区的线程结束
+            Buffer old = buffers.get(type);
+            if (old.deltas.isEmpty()) {
+                continue;
+            }
+            buffers.put(type, new Buffer());
+            old.retired = true;
+            while (old.writers.sum() > 0) {
+                Thread.yield();
+            }
+            //2.一次pipeline写入全部增量
+            Map<String, Long> deltas = new HashMap<>(old.deltas.size());
+            old.deltas.forEach((id, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    deltas.put(id.toString(), delta);
+                }
+            });
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            try {
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    deltas.forEach((id, delta) -> conn.hIncrBy(type.key(), id, delta));
+                    return null;
+                });
+            } catch (DataAccessException e) {
+                //3.写入失败,增量放回JVM等待下次重试
+                deltas.forEach((id, delta) -> add(type, Long.valueOf(id), delta));
+                log.error("计数器{}写入Redis失败", type, e);
+            }
+        }
+    }
+
+    /**
+     * 把Redis中的增量写入数据库，同一时刻只有一个节点执行
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void flushToDb() {
+        for (CounterType type : CounterType.values()) {
+            ILock lock = new SimpleRedisLock(LOCK_COUNTER_KEY + type.name().toLowerCase(), stringRedisTemplate);
+            if (!lock.tryLock(LOCK_COUNTER_TTL)) {
+                continue;
+            }
+            try {
+                flushToDb(type, lock);
+            } catch (RuntimeException e) {
+                log.error("计数器{}写入数据库失败", type, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void flushToDb(CounterType type, ILock lock) {
+        //1.上次没有处理完的flushing优先处理,否则把当前的增量改名为flushing,之后的增量写入新的Hash
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(type.flushingKey()))) {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(type.key()))) {
+                return;
+            }
+            stringRedisTemplate.rename(type.key(), type.flushingKey());
+        }
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(type.flushingKey());
+        //2.分批写入数据库,每批提交后删除对应的字段
+        Map<Long, Long> batch = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            batch.put(Long.valueOf(entry.getKey().toString()), Long.valueOf(entry.getValue().toString()));
+            if (batch.size() >= DB_BATCH_SIZE) {
+                writeBatch(type, batch);
+                batch = new HashMap<>();
+                //3.每批之后续期,锁已丢失说明其他节点可能在处理同一个flushing,停止以免重复累加
+                if (!lock.renew(LOCK_COUNTER_TTL)) {
+                    log.warn("计数器{}写回数据库时锁已过期，剩余增量下次处理", type);
+                    return;
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(type, batch);
+        }
+    }
+
+    private void writeBatch(CounterType type, Map<Long, Long> batch) {
+        //1.增量为0的字段不需要更新数据库,但同样要从flushing中删除
+        Object[] fields = batch.keySet().stream().map(String::valueOf).toArray();
+        Map<Long, Long> deltas = new HashMap<>(batch);
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            counterMapper.incr(type.getTable(), type.getColumn(), type.getIdColumn(), deltas);
+        }
+        if (fields.length > 0) {
+            stringRedisTemplate.opsForHash().delete(type.flushingKey(), fields);
+        }
+        //2.通知缓存了数据库中计数的业务删除缓存
+        if (!deltas.isEmpty()) {
+            eventPublisher.publishEvent(new CounterFlushedEvent(type, deltas.keySet()));
+        }
+    }
+
+    /**
+     * 停机前把JVM内的增量写入Redis
+     */
+    @PreDestroy
+    public void destroy() {
+        flushToRedis();
+    }
+
+    /**
+     * JVM内的增量缓冲区，写回Redis时整体替换
+     */
+    private static class Buffer {
+        private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+        /**
+         * 正在写入该缓冲区的线程数
+         */
+        private final LongAdder writers = new LongAdder();
+        private volatile boolean retired;
+    }
+}
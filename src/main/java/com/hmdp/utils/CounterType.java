@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+import lombok.Getter;
+
+/**
+ * 热点计数器，对应数据库中需要累加的字段
+ */
+@Getter
+public enum CounterType {
+    BLOG_LIKED("tb_blog", "liked", "id"),
+    BLOG_COMMENTS("tb_blog", "comments", "id"),
+    COMMENT_LIKED("tb_blog_comments", "liked", "id"),
+    SHOP_SOLD("tb_shop", "sold", "id"),
+    SHOP_COMMENTS("tb_shop", "comments", "id");
+
+    private final String table;
+    private final String column;
+    private final String idColumn;
+
+    CounterType(String table, String column, String idColumn) {
+        this.table = table;
+        this.column = column;
+        this.idColumn = idColumn;
+    }
+
+    /**
+     * Redis中累加增量的Hash
+     */
+    public String key() {
+        return RedisConstants.COUNTER_KEY + name().toLowerCase();
+    }
+
+    /**
+     * 正在写入数据库的增量Hash
+     */
+    public String flushingKey() {
+        return key() + ":flushing";
+    }
+}
@@ -0,0 +1,55 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 游标分页的游标编解码，游标由(排序字段, id)组成，对客户端不透明
+ */
+public class CursorUtils {
+
+    private static final String SEPARATOR = ":";
+
+    /**
+     * 生成游标
+     * @param values 最后一条记录的排序字段和id
+     */
+    public static String encode(long... values) {
+        StringBuilder sb = new StringBuilder();
+        for (long value : values) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(value);
+        }
+        return Base64.encodeUrlSafe(sb.toString());
+    }
+
+    /**
+     * 解析游标
+     * @param cursor 游标，为空表示查询第一页
+     * @param length 游标中值的个数
+     * @return 游标中的值，第一页返回null
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static long[] decode(String cursor, int length) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String[] arr = Base64.decodeStr(cursor, StandardCharsets.UTF_8).split(SEPARATOR);
+            if (arr.length != length) {
+                throw new IllegalArgumentException("游标格式错误");
+            }
+            long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = Long.parseLong(arr[i]);
+            }
+            return values;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("游标格式错误", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点key的本地缓存(L1)：CacheClient的每次读取都交给HotKeyDetector统计，成为热点的key从Redis读到后
+ * 在本节点保存local-ttl-millis，期间不再访问Redis，减轻热点所在Redis分片的压力；冷却后删除。
+ * <p>
+ * 保存的是缓存的原始字节，每次命中仍然反序列化，调用方拿到的对象互不影响。
+ * 数据修改时CacheInvalidator通过pub/sub通知所有节点删除，消息丢失时最多在local-ttl-millis内读到旧数据
+ */
+@Slf4j
+@Component
+public class HotKeyCache {
+
+    private static final String LOCAL_CACHE_NAME = "local:hot-key";
+
+    private final boolean enabled;
+    private final long localTtlMillis;
+    private final HotKeyDetector detector;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * 每次失效加1。读取Redis前记下，写入本地缓存时不一致说明期间有过失效，读到的可能是旧数据，不写入
+     */
+    private volatile long generation;
+
+    public HotKeyCache(@Value("${hmdp.hot-key.enabled:true}") boolean enabled,
+                       @Value("${hmdp.hot-key.local-ttl-millis:1000}") long localTtlMillis,
+                       @Value("${hmdp.hot-key.sketch-width:4096}") int sketchWidth,
+                       @Value("${hmdp.hot-key.sample-rate:4}") int sampleRate,
+                       @Value("${hmdp.hot-key.threshold:500}") long threshold,
+                       @Value("${hmdp.hot-key.cooldown-windows:10}") int cooldownWindows,
+                       @Value("${hmdp.hot-key.max-keys:100}") int maxKeys) {
+        this.enabled = enabled;
+        this.localTtlMillis = localTtlMillis;
+        this.detector = new HotKeyDetector(sketchWidth, sampleRate, threshold, cooldownWindows, maxKeys);
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * 记录一次访问，是热点且本地有未过期的值时返回，否则返回null
+     */
+    public byte[] get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        detector.record(key);
+        if (!detector.isHot(key)) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expireAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            CacheMetrics.miss(LOCAL_CACHE_NAME);
+            return null;
+        }
+        CacheMetrics.hit(LOCAL_CACHE_NAME);
+        return entry.value;
+    }
+
+    /**
+     * 从Redis读到的值，是热点且读取期间没有失效时写入本地
+     * @param generation 读取Redis前的generation()
+     */
+    public void put(String key, byte[] value, long generation) {
+        if (!enabled || !detector.isHot(key)) {
+            return;
+        }
+        synchronized (this) {
+            if (generation == this.generation) {
+                entries.put(key, new Entry(value, System.currentTimeMillis() + localTtlMillis));
+            }
+        }
+    }
+
+    public void invalidate(Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+            entries.keySet().removeAll(keys);
+        }
+    }
+
+    /**
+     * 当前的热点
+     */
+    public List<HotKeyDetector.HotKey> hotKeys() {
+        return detector.hotKeys();
+    }
+
+    /**
+     * 每个窗口结束时更新热点，删除冷却的key和过期的值
+     */
+    @Scheduled(fixedDelayString = "${hmdp.hot-key.window-millis:1000}")
+    public void rotate() {
+        if (!enabled) {
+            return;
+        }
+        List<String> cooled = detector.rotate();
+        if (!cooled.isEmpty()) {
+            entries.keySet().removeAll(cooled);
+            log.debug("热点key冷却: {}", cooled);
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expireAt <= now);
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final byte[] value;
+        private final long expireAt;
+    }
+}
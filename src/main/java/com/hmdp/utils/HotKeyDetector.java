@@ -0,0 +1,155 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 热点key探测：按时间窗口统计key的访问次数，用count-min sketch估算，内存固定为depth * width个计数器，与key的数量无关。
+ * <p>
+ * 每sampleRate次访问抽样记录一次，估算值乘以sampleRate。一个窗口内估算值达到threshold的key成为热点；
+ * 连续cooldownWindows个窗口没有达到threshold后冷却。count-min sketch只会高估，冷key与热key哈希冲突时可能被误判为热点，
+ * width越大误判越少。热点最多maxHotKeys个，超出时保留访问次数最多的
+ */
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+
+    private final int width;
+    private final int sampleRate;
+    private final long threshold;
+    private final int cooldownWindows;
+    private final int maxHotKeys;
+    private final AtomicIntegerArray counters;
+    /**
+     * 当前窗口内估算值达到阈值的key -> 估算值
+     */
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    /**
+     * 当前的热点，每个窗口结束时整体替换，读取时不加锁
+     */
+    private volatile Map<String, HotKey> hotKeys = Collections.emptyMap();
+
+    /**
+     * @param width 每行计数器的数量，向上取整为2的幂
+     */
+    public HotKeyDetector(int width, int sampleRate, long threshold, int cooldownWindows, int maxHotKeys) {
+        this.width = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.threshold = threshold;
+        this.cooldownWindows = cooldownWindows;
+        this.maxHotKeys = maxHotKeys;
+        this.counters = new AtomicIntegerArray(DEPTH * this.width);
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public void record(String key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        //1.每行用不同的哈希(h1 + i * h2)定位一个计数器,估算值取各行的最小值
+        int h1 = mix(key.hashCode());
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * width + ((h1 + i * h2) & (width - 1));
+            min = Math.min(min, counters.incrementAndGet(index));
+        }
+        //2.达到阈值的key在窗口结束时成为热点
+        long estimate = (long) min * sampleRate;
+        if (estimate >= threshold) {
+            candidates.merge(key, estimate, Math::max);
+        }
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 当前的热点，按访问次数从多到少排列
+     */
+    public List<HotKey> hotKeys() {
+        List<HotKey> list = new ArrayList<>(hotKeys.values());
+        list.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+        return list;
+    }
+
+    /**
+     * 结束当前窗口：更新热点，清空计数器
+     * @return 冷却(不再是热点)的key
+     */
+    public synchronized List<String> rotate() {
+        //1.本窗口达到阈值的key成为(或继续是)热点
+        Map<String, HotKey> next = new HashMap<>();
+        candidates.forEach((key, count) -> {
+            HotKey old = hotKeys.get(key);
+            next.put(key, new HotKey(key, count, old == null ? LocalDateTime.now() : old.getHotSince(), 0));
+        });
+        //2.没有达到阈值的旧热点,连续cooldownWindows个窗口后冷却
+        List<String> cooled = new ArrayList<>();
+        hotKeys.forEach((key, old) -> {
+            if (next.containsKey(key)) {
+                return;
+            }
+            if (old.getIdleWindows() + 1 >= cooldownWindows) {
+                cooled.add(key);
+            } else {
+                next.put(key, new HotKey(key, old.getCount(), old.getHotSince(), old.getIdleWindows() + 1));
+            }
+        });
+        //3.超出数量上限时保留访问次数最多的
+        if (next.size() > maxHotKeys) {
+            List<HotKey> sorted = new ArrayList<>(next.values());
+            sorted.sort(Comparator.comparingInt(HotKey::getIdleWindows)
+                    .thenComparing(Comparator.comparingLong(HotKey::getCount).reversed()));
+            for (HotKey hotKey : sorted.subList(maxHotKeys, sorted.size())) {
+                next.remove(hotKey.getKey());
+                if (hotKeys.containsKey(hotKey.getKey())) {
+                    cooled.add(hotKey.getKey());
+                }
+            }
+        }
+        hotKeys = next;
+        //4.清空计数器,开始下一个窗口。清空期间的少量访问可能被计入任一窗口,不影响判断
+        candidates.clear();
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        return cooled;
+    }
+
+    /**
+     * murmur3的fmix32，打散String.hashCode的低位
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class HotKey {
+        private final String key;
+        /**
+         * 最近一个达到阈值的窗口内的访问次数(估算)
+         */
+        private final long count;
+        private final LocalDateTime hotSince;
+        /**
+         * 已经连续多少个窗口没有达到阈值
+         */
+        private final int idleWindows;
+    }
+}
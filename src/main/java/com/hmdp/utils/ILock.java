@@ -0,0 +1,25 @@
+package com.hmdp.utils;
+
+/**
+ * 分布式锁
+ */
+public interface ILock {
+
+    /**
+     * 尝试获取锁，不等待
+     * @param timeoutSec 锁的有效期，过期后自动释放
+     * @return true代表获取锁成功; false代表获取锁失败
+     */
+    boolean tryLock(long timeoutSec);
+
+    /**
+     * 持有锁时把有效期重新设置为timeoutSec
+     * @return false代表锁已过期或被其他线程持有，不应再继续执行受保护的操作
+     */
+    boolean renew(long timeoutSec);
+
+    /**
+     * 释放锁，只释放自己持有的锁
+     */
+    void unlock();
+}
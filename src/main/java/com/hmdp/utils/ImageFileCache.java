@@ -0,0 +1,149 @@
+package com.hmdp.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 图片文件句柄的LRU缓存，热门图片不需要每次请求都打开文件和读取文件属性。
+ * 句柄带引用计数，被淘汰时如果还有请求在读取，等最后一个请求释放后再关闭
+ */
+@Slf4j
+@Component
+public class ImageFileCache {
+
+    private static final int MAX_OPEN_FILES = 256;
+
+    private static final String CACHE_NAME = "local:image-file";
+
+    @Resource
+    private LocalImageStorage imageStorage;
+
+    private final LinkedHashMap<String, Handle> handles = new LinkedHashMap<String, Handle>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Handle> eldest) {
+            if (size() <= MAX_OPEN_FILES) {
+                return false;
+            }
+            eldest.getValue().evict();
+            return true;
+        }
+    };
+
+    /**
+     * 获取图片的文件句柄，用完后必须调用release
+     * @return 图片不存在时返回null
+     * @throws IllegalArgumentException 名称不是一个图片文件
+     */
+    public Handle acquire(String name) throws IOException {
+        synchronized (handles) {
+            Handle handle = handles.get(name);
+            if (handle != null) {
+                handle.refs++;
+                CacheMetrics.hit(CACHE_NAME);
+                return handle;
+            }
+        }
+        //1.未命中,在锁外打开文件
+        CacheMetrics.miss(CACHE_NAME);
+        Path path = imageStorage.resolve(name);
+        Handle opened;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                throw new IllegalArgumentException("错误的文件名称");
+            }
+            opened = new Handle(path, FileChannel.open(path, StandardOpenOption.READ),
+                    attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        //2.放入缓存,其他线程已经放入时使用已有的句柄
+        synchronized (handles) {
+            Handle handle = handles.putIfAbsent(name, opened);
+            if (handle == null) {
+                handle = opened;
+            } else {
+                opened.close();
+            }
+            handle.refs++;
+            return handle;
+        }
+    }
+
+    public void release(Handle handle) {
+        synchronized (handles) {
+            handle.refs--;
+            if (handle.evicted && handle.refs == 0) {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * 图片被删除或替换时移除缓存的句柄
+     */
+    public void invalidate(String name) {
+        synchronized (handles) {
+            Handle handle = handles.remove(name);
+            if (handle != null) {
+                handle.evict();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        synchronized (handles) {
+            handles.values().forEach(Handle::evict);
+            handles.clear();
+        }
+    }
+
+    @Getter
+    public static class Handle {
+        private final Path path;
+        private final FileChannel channel;
+        private final long size;
+        private final long lastModified;
+        /**
+         * 以下字段只在持有handles锁时访问
+         */
+        private int refs;
+        private boolean evicted;
+
+        private Handle(Path path, FileChannel channel, long size, long lastModified) {
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private void evict() {
+            evicted = true;
+            if (refs == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭图片文件失败，{}", path, e);
+            }
+        }
+    }
+}
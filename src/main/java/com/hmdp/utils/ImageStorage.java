@@ -0,0 +1,59 @@
+package com.hmdp.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片存储，name为以/开头的相对路径，例如/blogs/1/2/xxx.jpg
+ */
+public interface ImageStorage {
+
+    /**
+     * 流式写入图片，已存在时覆盖，写入完成前其他请求看不到该文件
+     * @param name 图片名称
+     * @param in 图片内容，由调用方关闭
+     */
+    void store(String name, InputStream in) throws IOException;
+
+    /**
+     * 把内容写入暂存区，暂存区不在图片目录中，发布之前不能通过任何图片名称访问
+     * @param in 内容，由调用方关闭
+     * @return 暂存文件的标识，用于publish和discard
+     */
+    String stage(InputStream in) throws IOException;
+
+    /**
+     * 原子地把暂存文件发布为图片，目标已存在时不覆盖，暂存文件保留由调用方丢弃
+     * @return 目标已存在时返回false
+     */
+    boolean publish(String staged, String name) throws IOException;
+
+    /**
+     * 丢弃暂存文件
+     */
+    void discard(String staged) throws IOException;
+
+    /**
+     * 读取图片
+     */
+    InputStream open(String name) throws IOException;
+
+    /**
+     * 图片是否存在
+     */
+    boolean exists(String name);
+
+    /**
+     * 原子地把图片改名，目标已存在时不覆盖
+     * @return 源图片不存在或目标已存在时返回false
+     * @throws IllegalArgumentException 名称不是一个图片文件
+     */
+    boolean move(String from, String to) throws IOException;
+
+    /**
+     * 删除图片
+     * @return 图片不存在时返回false
+     * @throws IllegalArgumentException 名称不是一个图片文件
+     */
+    boolean delete(String name) throws IOException;
+}
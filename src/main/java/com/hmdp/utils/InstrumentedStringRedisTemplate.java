@@ -0,0 +1,107 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 通知RedisCommandListener的StringRedisTemplate，用于指标统计和慢命令追踪。
+ * 在preProcessConnection中给连接套一层代理，对应用代码透明，executePipelined等回调拿到的仍是StringRedisConnection
+ */
+public class InstrumentedStringRedisTemplate extends StringRedisTemplate {
+
+    /**
+     * 连接的管理方法，不是Redis命令
+     */
+    private static final Set<String> NON_COMMANDS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "isPipelined", "isQueueing", "isSubscribed", "openPipeline",
+            "getNativeConnection", "getDelegate", "getSubscription", "getSentinelConnection",
+            "toString", "hashCode", "equals"));
+
+    private final RedisCommandListener[] listeners;
+
+    public InstrumentedStringRedisTemplate(RedisConnectionFactory connectionFactory, List<RedisCommandListener> listeners) {
+        super(connectionFactory);
+        this.listeners = listeners.toArray(new RedisCommandListener[0]);
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        RedisConnection target = super.preProcessConnection(connection, existingConnection);
+        if (listeners.length == 0) {
+            return target;
+        }
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                ClassUtils.getAllInterfacesForClass(target.getClass()), (proxy, method, args) -> {
+                    String command = method.getName();
+                    if (NON_COMMANDS.contains(command) || command.endsWith("Commands")) {
+                        return invoke(method, target, args);
+                    }
+                    long start = System.nanoTime();
+                    Throwable error = null;
+                    try {
+                        return invoke(method, target, args);
+                    } catch (Throwable e) {
+                        error = e;
+                        throw e;
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        String key = key(command, args);
+                        for (RedisCommandListener listener : listeners) {
+                            listener.onCommand(command, key, args, nanos, error);
+                        }
+                    }
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 取命令的第一个key，脚本取KEYS[1]
+     */
+    private static String key(String command, Object[] args) {
+        if (args == null || args.length == 0) {
+            return null;
+        }
+        Object key = args[0];
+        if (command.startsWith("eval")) {
+            // eval(script, returnType, numKeys, keysAndArgs...)
+            if (args.length < 4 || !(args[2] instanceof Integer) || (Integer) args[2] == 0) {
+                return null;
+            }
+            Object[] keysAndArgs = (Object[]) args[3];
+            key = keysAndArgs.length == 0 ? null : keysAndArgs[0];
+        } else if (key instanceof Object[]) {
+            // del(keys...)、mGet(keys...)等
+            Object[] keys = (Object[]) key;
+            key = keys.length == 0 ? null : keys[0];
+        } else if (key instanceof Collection) {
+            Collection<?> keys = (Collection<?>) key;
+            key = keys.isEmpty() ? null : keys.iterator().next();
+        }
+        if (key instanceof String) {
+            return (String) key;
+        }
+        if (key instanceof byte[]) {
+            return new String((byte[]) key, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+}
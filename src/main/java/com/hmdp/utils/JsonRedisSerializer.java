@@ -0,0 +1,35 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONException;
+import cn.hutool.json.JSONUtil;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 缓存值的JSON序列化，与之前StringRedisTemplate写入的内容完全相同。
+ * JSON中没有类型信息，反序列化得到JSONObject或JSONArray，由CacheClient按需要的类型转换
+ */
+public class JsonRedisSerializer implements RedisSerializer<Object> {
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return JSONUtil.parse(new String(bytes, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new SerializationException("不是JSON格式的缓存数据", e);
+        }
+    }
+}
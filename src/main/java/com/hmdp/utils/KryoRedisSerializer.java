@@ -0,0 +1,217 @@
+package com.hmdp.utils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * 缓存值的二进制序列化：Kryo按字段顺序写入，不写字段名；超过阈值时用LZ4压缩。
+ * <p>
+ * 格式为1字节头、4字节结构指纹加内容：0表示未压缩的Kryo数据，1表示LZ4压缩，之后是4字节原始长度和压缩后的数据。
+ * 结构指纹由注册的类及其字段计算，实体增删改字段后指纹变化，旧数据当作未命中由CacheClient重新加载，
+ * 不会按错误的字段顺序读出错乱的对象。
+ * 只能缓存下面注册的类，编号写入了缓存，只能追加不能修改
+ */
+public class KryoRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte RAW = 0;
+    private static final byte LZ4 = 1;
+    /**
+     * 格式头加结构指纹的长度
+     */
+    private static final int HEADER = 5;
+    /**
+     * 解压后的最大长度，防止错误的长度头申请过大的数组
+     */
+    private static final int MAX_LENGTH = 64 << 20;
+    /**
+     * LZ4的最大压缩比
+     */
+    private static final int MAX_RATIO = 255;
+    private static final int FIRST_ID = 100;
+    /**
+     * 注册的类，编号从FIRST_ID开始依次递增
+     */
+    private static final Class<?>[] TYPES = {
+            ArrayList.class, Shop.class, Voucher.class, Blog.class, BlogComments.class, UserDTO.class,
+            LocalDateTime.class, Collections.emptyList().getClass()
+    };
+    private static final int SCHEMA = schemaFingerprint();
+    private static final byte[] RAW_HEADER = {RAW, (byte) (SCHEMA >>> 24), (byte) (SCHEMA >>> 16), (byte) (SCHEMA >>> 8), (byte) SCHEMA};
+
+    private final int compressThreshold;
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final Pool<Kryo> kryoPool = new Pool<Kryo>(true, false, 64) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo();
+            // 未注册的类直接报错,不把类名写入缓存
+            kryo.setRegistrationRequired(true);
+            for (int i = 0; i < TYPES.length; i++) {
+                kryo.register(TYPES[i], FIRST_ID + i);
+            }
+            return kryo;
+        }
+    };
+
+    /**
+     * @param compressThreshold 序列化后超过该字节数时压缩，小于等于0时不压缩
+     */
+    public KryoRedisSerializer(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        //1.Kryo序列化,前面留出格式头和结构指纹
+        Kryo kryo = kryoPool.obtain();
+        byte[] raw;
+        try (Output output = new Output(256, -1)) {
+            output.writeBytes(RAW_HEADER);
+            kryo.writeClassAndObject(output, value);
+            raw = output.toBytes();
+        } catch (RuntimeException | StackOverflowError e) {
+            throw new SerializationException("Kryo序列化失败: " + value.getClass().getName(), e);
+        } finally {
+            kryoPool.free(kryo);
+        }
+        int length = raw.length - HEADER;
+        if (compressThreshold <= 0 || length <= compressThreshold) {
+            return raw;
+        }
+        //2.超过阈值,压缩后更小时才使用压缩的结果
+        byte[] compressed = new byte[HEADER + 4 + compressor.maxCompressedLength(length)];
+        int compressedLength = compressor.compress(raw, HEADER, length, compressed, HEADER + 4);
+        if (compressedLength + 4 >= length) {
+            return raw;
+        }
+        compressed[0] = LZ4;
+        writeInt(compressed, 1, SCHEMA);
+        writeInt(compressed, HEADER, length);
+        byte[] result = new byte[HEADER + 4 + compressedLength];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length <= HEADER || (bytes[0] != RAW && bytes[0] != LZ4)) {
+            throw new SerializationException("不是Kryo格式的缓存数据");
+        }
+        if (readInt(bytes, 1) != SCHEMA) {
+            throw new SerializationException("缓存数据的结构版本不一致");
+        }
+        try {
+            //1.按格式头解压
+            byte[] data;
+            int offset;
+            int length;
+            if (bytes[0] == RAW) {
+                data = bytes;
+                offset = HEADER;
+                length = bytes.length - HEADER;
+            } else {
+                data = decompress(bytes);
+                offset = 0;
+                length = data.length;
+            }
+            //2.Kryo反序列化
+            Kryo kryo = kryoPool.obtain();
+            try (Input input = new Input(data, offset, length)) {
+                return kryo.readClassAndObject(input);
+            } finally {
+                kryoPool.free(kryo);
+            }
+        } catch (SerializationException e) {
+            throw e;
+        } catch (RuntimeException | OutOfMemoryError | StackOverflowError e) {
+            // 损坏的数据只当作未命中,不影响请求
+            throw new SerializationException("Kryo反序列化失败", e);
+        }
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        int compressedLength = bytes.length - HEADER - 4;
+        if (compressedLength <= 0) {
+            throw new SerializationException("LZ4数据不完整");
+        }
+        //1.校验长度头,不超过上限和压缩数据可能解出的最大长度
+        int length = readInt(bytes, HEADER);
+        if (length <= 0 || length > MAX_LENGTH || length > (long) compressedLength * MAX_RATIO) {
+            throw new SerializationException("LZ4长度错误: " + length);
+        }
+        //2.解压,长度必须与长度头一致
+        byte[] data = new byte[length];
+        int n = decompressor.decompress(bytes, HEADER + 4, compressedLength, data, 0, length);
+        if (n != length) {
+            throw new SerializationException("LZ4长度不一致: " + n + "/" + length);
+        }
+        return data;
+    }
+
+    /**
+     * 注册的类名、编号和项目实体的字段名、字段类型的CRC32
+     */
+    private static int schemaFingerprint() {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < TYPES.length; i++) {
+            update(crc, (FIRST_ID + i) + "=" + TYPES[i].getName());
+            if (!TYPES[i].getName().startsWith("com.hmdp.")) {
+                continue;
+            }
+            for (Class<?> c = TYPES[i]; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                        update(crc, field.getName() + ":" + field.getGenericType().getTypeName());
+                    }
+                }
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void update(CRC32 crc, String s) {
+        crc.update(s.getBytes(StandardCharsets.UTF_8));
+        crc.update(';');
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+}
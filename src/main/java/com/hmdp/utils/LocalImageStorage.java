@@ -0,0 +1,153 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+
+/**
+ * 本地文件系统的图片存储，根目录由hmdp.upload.dir配置。
+ * 上传的内容通过FileChannel.transferFrom分块写入同目录下的临时文件，再原子地改名为目标文件，不会把整个文件读入堆内存。
+ * 上传的图片先写入暂存目录(hmdp.upload.staging-dir，默认为根目录旁的{根目录名}.staging)，发布时硬链接到根目录中，
+ * 暂存目录必须与根目录在同一文件系统
+ */
+@Component
+public class LocalImageStorage implements ImageStorage {
+
+    /**
+     * 每次transferFrom的最大字节数
+     */
+    private static final long TRANSFER_CHUNK = 1 << 20;
+
+    private final Path root;
+    private final Path staging;
+
+    public LocalImageStorage(@Value("${hmdp.upload.dir}") String dir,
+                             @Value("${hmdp.upload.staging-dir:}") String stagingDir) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.staging = stagingDir.isEmpty()
+                ? root.resolveSibling(root.getFileName() + ".staging")
+                : Paths.get(stagingDir).toAbsolutePath().normalize();
+        if (staging.startsWith(root)) {
+            throw new IllegalArgumentException("暂存目录不能在图片目录中: " + staging);
+        }
+    }
+
+    @Override
+    public void store(String name, InputStream in) throws IOException {
+        Path target = resolve(name);
+        Files.createDirectories(target.getParent());
+        //1.写入临时文件
+        Path tmp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            write(in, tmp);
+            //2.原子改名,读取方只会看到完整的文件
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public String stage(InputStream in) throws IOException {
+        Files.createDirectories(staging);
+        Path tmp = Files.createTempFile(staging, ".upload-", ".tmp");
+        try {
+            write(in, tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp.getFileName().toString();
+    }
+
+    @Override
+    public boolean publish(String staged, String name) throws IOException {
+        Path target = resolve(name);
+        Files.createDirectories(target.getParent());
+        // 硬链接在目标已存在时失败,不会覆盖目标;链接后读取方只会看到完整的文件
+        try {
+            Files.createLink(target, resolveStaged(staged));
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        Files.delete(resolveStaged(staged));
+        return true;
+    }
+
+    @Override
+    public void discard(String staged) throws IOException {
+        Files.deleteIfExists(resolveStaged(staged));
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return Files.newInputStream(resolve(name));
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Files.isRegularFile(resolve(name));
+    }
+
+    @Override
+    public boolean move(String from, String to) throws IOException {
+        Path source = resolve(from);
+        Path target = resolve(to);
+        if (Files.isDirectory(source)) {
+            throw new IllegalArgumentException("错误的文件名称");
+        }
+        Files.createDirectories(target.getParent());
+        // 硬链接在目标已存在时失败,不会像rename一样覆盖目标
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException | NoSuchFileException e) {
+            return false;
+        }
+        Files.delete(source);
+        return true;
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        Path path = resolve(name);
+        if (Files.isDirectory(path)) {
+            throw new IllegalArgumentException("错误的文件名称");
+        }
+        return Files.deleteIfExists(path);
+    }
+
+    private static void write(InputStream in, Path file) throws IOException {
+        try (ReadableByteChannel src = Channels.newChannel(in);
+             FileChannel dest = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long position = 0, n;
+            while ((n = dest.transferFrom(src, position, TRANSFER_CHUNK)) > 0) {
+                position += n;
+            }
+        }
+    }
+
+    private Path resolveStaged(String staged) {
+        Path path = staging.resolve(staged).normalize();
+        if (!staging.equals(path.getParent())) {
+            throw new IllegalArgumentException("错误的暂存文件: " + staged);
+        }
+        return path;
+    }
+
+    /**
+     * 解析图片的绝对路径，不允许访问根目录之外的文件
+     */
+    public Path resolve(String name) {
+        Path path = root.resolve(name.replaceFirst("^[/\\\\]+", "")).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("错误的文件名称");
+        }
+        return path;
+    }
+}
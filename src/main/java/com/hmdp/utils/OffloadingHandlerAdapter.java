@@ -0,0 +1,97 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 把阻塞的控制器方法转到业务线程池执行：参数在Tomcat线程上解析，方法本身包装成Callable交给MVC的异步处理，
+ * Tomcat线程立即释放，等待Redis和MySQL的线程数不再受Tomcat线程池限制。
+ * <p>
+ * 只处理@RestController中返回普通结果的方法；直接写响应的方法(参数中有ServletResponse、OutputStream、Writer)、
+ * 返回void或已经是异步返回值的方法仍在Tomcat线程上执行。
+ * 执行时把当前用户(UserHolder)和请求属性传递到业务线程，执行完后清理
+ */
+public class OffloadingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        if (!offloadable(handlerMethod)) {
+            return super.createInvocableHandlerMethod(handlerMethod);
+        }
+        return new OffloadingHandlerMethod(handlerMethod);
+    }
+
+    private static boolean offloadable(HandlerMethod handlerMethod) {
+        if (!AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), RestController.class)) {
+            return false;
+        }
+        Class<?> returnType = handlerMethod.getReturnType().getParameterType();
+        if (returnType == void.class
+                || Callable.class.isAssignableFrom(returnType)
+                || WebAsyncTask.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType)
+                || CompletionStage.class.isAssignableFrom(returnType)
+                || ResponseBodyEmitter.class.isAssignableFrom(returnType)
+                || StreamingResponseBody.class.isAssignableFrom(returnType)) {
+            return false;
+        }
+        for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            Class<?> type = parameter.getParameterType();
+            if (ServletResponse.class.isAssignableFrom(type)
+                    || OutputStream.class.isAssignableFrom(type)
+                    || Writer.class.isAssignableFrom(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class OffloadingHandlerMethod extends ServletInvocableHandlerMethod {
+
+        OffloadingHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+        }
+
+        @Override
+        public Object invokeForRequest(NativeWebRequest request, ModelAndViewContainer mavContainer,
+                                       Object... providedArgs) throws Exception {
+            //1.在Tomcat线程上解析参数(读取请求体、参数校验)
+            Object[] args = getMethodArgumentValues(request, mavContainer, providedArgs);
+            //2.记录当前用户和请求,在业务线程上恢复
+            UserDTO user = UserHolder.getUser();
+            HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+            return (Callable<Object>) () -> {
+                UserHolder.saveUser(user);
+                if (servletRequest != null) {
+                    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest));
+                }
+                try {
+                    return doInvoke(args);
+                } finally {
+                    UserHolder.removeUser();
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
+
+/**
+ * CacheClient的响应式版本，key、序列化格式和空值的写法与CacheClient一致，两套服务可以共用缓存
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class ReactiveCacheClient {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final RedisSerializer<Object> cacheSerializer;
+
+    public ReactiveCacheClient(ReactiveRedisConnectionFactory connectionFactory, RedisSerializer<Object> cacheSerializer) {
+        // 值按原始字节读写,由cacheSerializer序列化
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.string())
+                .value(RedisSerializationContext.SerializationPair.byteArray())
+                .build();
+        this.redisTemplate = new ReactiveRedisTemplate<>(connectionFactory, context);
+        this.cacheSerializer = cacheSerializer;
+    }
+
+    /**
+     * 将任意对象序列化后存储在String类型的key中，并设置TTL
+     */
+    public Mono<Boolean> set(String key, Object value, Long time, TimeUnit unit) {
+        return redisTemplate.opsForValue().set(key, cacheSerializer.serialize(value), Duration.ofMillis(unit.toMillis(time)));
+    }
+
+    /**
+     * 查询缓存的对象，未命中时查询数据库并写入缓存，数据库中不存在时缓存空值
+     * @param dbFallback 查询数据库的函数，不存在时返回空的Mono
+     * @return 对象，不存在时为空的Mono
+     */
+    public <R, ID> Mono<R> queryWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID, Mono<R>> dbFallback, Long time, TimeUnit unit) {
+        return queryWithPassThrough(keyPrefix, null, id, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同上，写入缓存时检查版本号，规则与CacheClient一致
+     * @param versionKeyPrefix 版本号key前缀，为null时不检查
+     */
+    public <R, ID> Mono<R> queryWithPassThrough(String keyPrefix, String versionKeyPrefix, ID id, Class<R> type,
+                                                Function<ID, Mono<R>> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        //1.从Redis查询缓存,命中时空值表示数据库中不存在,格式不符时当作未命中
+        Mono<Optional<R>> cached = redisTemplate.opsForValue().get(key)
+                .flatMap(bytes -> {
+                    Optional<R> value = read(key, bytes, type);
+                    return value == null ? Mono.<Optional<R>>empty() : Mono.just(value);
+                })
+                .doOnNext(value -> CacheMetrics.hit(keyPrefix));
+        //2.未命中,查询数据库并写入Redis,不存在时缓存空值
+        Mono<Optional<R>> loaded = Mono.defer(() -> {
+            CacheMetrics.miss(keyPrefix);
+            if (versionKeyPrefix == null) {
+                return dbFallback.apply(id)
+                        .flatMap(r -> set(key, r, time, unit).thenReturn(Optional.of(r)))
+                        .switchIfEmpty(Mono.defer(() -> redisTemplate.opsForValue()
+                                .set(key, EMPTY, Duration.ofMinutes(CACHE_NULL_TTL))
+                                .thenReturn(Optional.empty())));
+            }
+            //2.1 查询数据库之前读取版本号,写入时版本号变化则放弃
+            String versionKey = versionKeyPrefix + id;
+            return redisTemplate.opsForValue().get(versionKey).defaultIfEmpty(EMPTY)
+                    .flatMap(version -> dbFallback.apply(id)
+                            .flatMap(r -> setIfVersion(keyPrefix, key, cacheSerializer.serialize(r),
+                                    unit.toSeconds(time), versionKey, version).thenReturn(Optional.of(r)))
+                            .switchIfEmpty(Mono.defer(() -> setIfVersion(keyPrefix, key, EMPTY,
+                                    TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL), versionKey, version)
+                                    .thenReturn(Optional.empty()))));
+        });
+        return cached.switchIfEmpty(loaded).flatMap(Mono::justOrEmpty);
+    }
+
+    private Mono<Long> setIfVersion(String keyPrefix, String key, byte[] value, long seconds,
+                                    String versionKey, byte[] version) {
+        return redisTemplate.execute(CacheClient.SET_IF_VERSION_SCRIPT, Arrays.asList(key, versionKey),
+                        Arrays.asList(version, String.valueOf(seconds).getBytes(StandardCharsets.UTF_8), value))
+                .next()
+                .doOnNext(written -> {
+                    if (written == 0) {
+                        CacheMetrics.staleWrite(keyPrefix);
+                    }
+                });
+    }
+
+    /**
+     * @return 空值返回Optional.empty()，格式不符返回null
+     */
+    private <R> Optional<R> read(String key, byte[] bytes, Class<R> type) {
+        if (bytes.length == 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(CacheClient.toBean(cacheSerializer.deserialize(bytes), type));
+        } catch (SerializationException e) {
+            log.debug("缓存{}的格式不符，重新加载", key, e);
+            return null;
+        }
+    }
+}
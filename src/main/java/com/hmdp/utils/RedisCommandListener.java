@@ -0,0 +1,28 @@
+package com.hmdp.utils;
+
+/**
+ * 监听StringRedisTemplate执行的每条Redis命令
+ */
+public interface RedisCommandListener {
+
+    /**
+     * 命令执行完成后调用，在执行命令的线程中同步调用，实现不能有耗时操作
+     * @param command 命令，即RedisConnection的方法名，例如hGetAll
+     * @param key 第一个key，没有key的命令为null
+     * @param args 命令参数
+     * @param nanos 耗时，pipeline和事务中的命令只是入队的耗时
+     * @param error 执行失败时的异常
+     */
+    void onCommand(String command, String key, Object[] args, long nanos, Throwable error);
+
+    /**
+     * key的前缀，截取到最后一个冒号，例如cache:shop:1的前缀为cache:shop:，用作统计维度避免id导致维度过多
+     */
+    static String prefix(String key) {
+        if (key == null) {
+            return "none";
+        }
+        int index = key.lastIndexOf(':');
+        return index < 0 ? key : key.substring(0, index + 1);
+    }
+}
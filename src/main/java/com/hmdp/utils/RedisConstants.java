@@ -11,12 +11,39 @@ public class RedisConstants {
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shop-type:list";
+    public static final Long CACHE_SHOP_TYPE_TTL = 60L;
+
+    public static final String CACHE_VOUCHER_KEY = "cache:voucher:shop:";
+    public static final Long CACHE_VOUCHER_TTL = 30L;
+
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final Long CACHE_USER_TTL = 30L;
+
+    public static final String CACHE_BLOG_COMMENTS_KEY = "cache:blog:comments:";
+    public static final Long CACHE_BLOG_COMMENTS_TTL = 5L;
+
+    public static final String CACHE_SHOP_VERSION_KEY = "cache:version:shop:";
+    public static final Long CACHE_VERSION_TTL = 1440L;
+
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
+    public static final String COUNTER_KEY = "counter:";
+    public static final String LOCK_COUNTER_KEY = "lock:counter:";
+    public static final Long LOCK_COUNTER_TTL = 60L;
+
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_TIME_KEY = "seckill:time:";
+    public static final Long SECKILL_TIME_TTL = 30L;
+    public static final String ORDER_PAY_TIMEOUT_KEY = "order:pay-timeout";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String COMMENT_LIKED_KEY = "comment:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String IMAGE_REF_KEY = "img:ref:";
 }
@@ -0,0 +1,178 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 合并并发请求中的单key GET：调用线程把key放入队列后等待，分发线程把队列中的key合并成一次MGET。
+ * <p>
+ * 分发线程每次取走队列中已有的全部请求(最多max-batch个)，再等待window-micros收集后到的请求；
+ * window为0时不增加延迟，一次MGET执行期间到达的请求会合并到下一批，并发越高每批的key越多。
+ * 多个分发线程共用一个队列，一次MGET变慢时其他线程继续处理后到的请求。
+ * 调用线程最多等待timeout-millis，超时后不再等待，自己执行一次GET。
+ * 只适用于单机Redis，集群模式下MGET的key需要在同一个slot
+ */
+@Slf4j
+@Component
+public class RedisGetBatcher {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final long timeoutMillis;
+    private final BlockingQueue<PendingGet> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> dispatchers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public RedisGetBatcher(StringRedisTemplate stringRedisTemplate,
+                           @Value("${hmdp.redis.batch.enabled:true}") boolean enabled,
+                           @Value("${hmdp.redis.batch.window-micros:0}") long windowMicros,
+                           @Value("${hmdp.redis.batch.max-batch:128}") int maxBatch,
+                           @Value("${hmdp.redis.batch.dispatchers:2}") int dispatchers,
+                           @Value("${hmdp.redis.batch.timeout-millis:500}") long timeoutMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.timeoutMillis = timeoutMillis;
+        for (int i = 0; i < Math.max(dispatchers, 1); i++) {
+            Thread dispatcher = new Thread(this::dispatch, "redis-get-batcher-" + i);
+            dispatcher.setDaemon(true);
+            this.dispatchers.add(dispatcher);
+            if (enabled) {
+                dispatcher.start();
+            }
+        }
+    }
+
+    /**
+     * 查询String类型的key，返回原始字节，不存在时返回null
+     */
+    public byte[] get(String key) {
+        if (!enabled || !running) {
+            return getNow(key);
+        }
+        PendingGet pending = new PendingGet(key);
+        queue.add(pending);
+        // 入队时分发线程已经停止,直接查询
+        if (!running && queue.remove(pending)) {
+            return getNow(key);
+        }
+        try {
+            return pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            //分发线程迟迟没有处理,不再等待,直接查询
+            queue.remove(pending);
+            log.warn("合并GET等待超过{}ms，直接查询{}", timeoutMillis, key);
+            return getNow(key);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待Redis查询结果时被中断", e);
+        }
+    }
+
+    private byte[] getNow(String key) {
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey(key)));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void dispatch() {
+        List<PendingGet> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                //1.等待第一个请求,取走队列中已有的请求
+                PendingGet first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                //2.在窗口内继续收集
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingGet next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                //3.一次MGET
+                execute(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                // 任何异常都不能让分发线程退出,否则之后的请求只能等到超时
+                batch.forEach(p -> p.future.completeExceptionally(e));
+                log.error("合并GET分发失败", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<PendingGet> batch) {
+        Set<String> distinct = new LinkedHashSet<>();
+        batch.forEach(p -> distinct.add(p.key));
+        List<String> keys = new ArrayList<>(distinct);
+        try {
+            byte[][] rawKeys = keys.stream().map(RedisGetBatcher::rawKey).toArray(byte[][]::new);
+            List<byte[]> values = stringRedisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys));
+            Map<String, byte[]> valueMap = new HashMap<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                valueMap.put(keys.get(i), values == null ? null : values.get(i));
+            }
+            batch.forEach(p -> p.future.complete(valueMap.get(p.key)));
+        } catch (Throwable e) {
+            batch.forEach(p -> p.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 停止分发线程，队列中剩余的请求在当前线程中执行
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.interrupt();
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        List<PendingGet> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            execute(rest);
+        }
+    }
+
+    private static class PendingGet {
+        private final String key;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        PendingGet(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -1,22 +1,25 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.UserDTO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
 
 @Slf4j
-public class RefreshInterceptor implements HandlerInterceptor {
+public class RefreshInterceptor implements AsyncHandlerInterceptor {
     private StringRedisTemplate stringRedisTemplate;
 
     public RefreshInterceptor(StringRedisTemplate stringRedisTemplate) {
@@ -26,6 +29,10 @@ public class RefreshInterceptor implements HandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        //异步执行完成后的再次分发只写出结果,不需要再查询用户
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
         //1.获取请求头的token
         String token = request.getHeader("authorization");
         //2.基于token获取Redis中的用户
@@ -33,19 +40,24 @@ public class RefreshInterceptor implements HandlerInterceptor {
             return true;
         }
         String key = LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
+        //2.1 查询用户和刷新有效期放在一个pipeline中,一次往返;key不存在时EXPIRE不生效
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hGetAll(key);
+            conn.expire(key, TimeUnit.MINUTES.toSeconds(30));
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        Map<String, String> userMap = (Map<String, String>) results.get(0);
         //3.判断用户是否存在
-        if (userMap.isEmpty()) {
-
+        if (userMap == null || userMap.isEmpty()) {
             return true;
         }
         //5.将查询到的Hash数据转换为UserDto对象
-        UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
+        UserDTO userDTO = UserDtoUtils.fromHash(userMap);
         //6.存在,保存信息到ThreadLocal
         UserHolder.saveUser(userDTO);
-        //7.刷新token的有效期
-        stringRedisTemplate.expire(key, 30, TimeUnit.MINUTES);
-        //8.放行
+        //7.放行
         return true;
 
     }
@@ -55,4 +67,10 @@ public class RefreshInterceptor implements HandlerInterceptor {
         //移除用户
         UserHolder.removeUser();
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //控制器方法转到业务线程执行,Tomcat线程上的用户在这里移除
+        UserHolder.removeUser();
+    }
 }
@@ -0,0 +1,81 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本节点的响应缓存：保存热点GET接口编码好的响应体(以及gzip压缩后的版本)，由ResponseCacheFilter直接写出，不再经过Jackson。
+ * key为请求路径加排序后的参数。
+ * <p>
+ * 数据修改时CacheInvalidator按路径删除本节点的条目，并通过失效消息删除其他节点的条目(开启binlog监听时各节点各自处理)；
+ * 条目的有效期(秒级)只是失效消息丢失时看到新数据的最长延迟。
+ * 未开启hmdp.response-cache.enabled时没有写入，invalidate为空操作
+ */
+@Component
+public class ResponseCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public ResponseCache(@Value("${hmdp.response-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 查询未过期的条目
+     */
+    public Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getExpireAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 写入条目，条目数达到上限时先清理过期的条目，仍然没有空间则不缓存
+     */
+    public void put(String key, Entry entry) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(e -> e.getExpireAt() <= now);
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(key, entry);
+    }
+
+    /**
+     * 删除该路径的全部条目(不论参数)
+     */
+    public void invalidate(String path) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        String withParams = path + "?";
+        entries.keySet().removeIf(key -> key.equals(path) || key.startsWith(withParams));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final String contentType;
+        private final String etag;
+        private final byte[] body;
+        /**
+         * gzip压缩后的响应体，响应体较小时为null
+         */
+        private final byte[] gzipped;
+        private final long expireAt;
+    }
+}
@@ -0,0 +1,192 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.ZipUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 热点GET接口的响应缓存：命中时直接把缓存的字节写入输出流，支持gzip和ETag/If-None-Match；
+ * 未命中时正常执行，成功(success为true)的200响应写入ResponseCache。
+ * <p>
+ * 只用于与登录用户无关的接口。命中时不经过拦截器，不会刷新登录token的有效期
+ */
+@Slf4j
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private final ResponseCache responseCache;
+    private final int gzipMinSize;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    /**
+     * 路径模式 -> 缓存规则，按加入顺序匹配
+     */
+    private final Map<String, Rule> rules = new LinkedHashMap<>();
+
+    public ResponseCacheFilter(ResponseCache responseCache, int gzipMinSize) {
+        this.responseCache = responseCache;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * 缓存匹配该路径模式的GET请求
+     * @param pattern Ant风格的路径模式
+     * @param ttlMillis 有效期(毫秒)
+     * @param params 接口使用的查询参数，只有这些参数参与缓存key，其他参数不会产生新的条目
+     */
+    public ResponseCacheFilter cache(String pattern, long ttlMillis, String... params) {
+        String[] sorted = params.clone();
+        Arrays.sort(sorted);
+        rules.put(pattern, new Rule(ttlMillis, sorted));
+        return this;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // 异步执行的控制器在异步分派结束后才写入响应体
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String pattern = HttpMethod.GET.matches(request.getMethod()) ? match(request.getRequestURI()) : null;
+        if (pattern == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Rule rule = rules.get(pattern);
+        String key = key(request, rule.params);
+        HttpServletResponse responseToUse = response;
+        if (!isAsyncDispatch(request)) {
+            //1.命中,直接写出缓存的字节
+            ResponseCache.Entry entry = responseCache.get(key);
+            if (entry != null) {
+                CacheMetrics.hit("response:" + pattern);
+                write(request, response, entry);
+                return;
+            }
+            CacheMetrics.miss("response:" + pattern);
+            responseToUse = new ContentCachingResponseWrapper(response);
+        }
+        //2.未命中,正常执行并记录响应体
+        try {
+            chain.doFilter(request, responseToUse);
+        } finally {
+            if (!isAsyncStarted(request)) {
+                ContentCachingResponseWrapper wrapper =
+                        WebUtils.getNativeResponse(responseToUse, ContentCachingResponseWrapper.class);
+                if (wrapper != null) {
+                    store(key, rule.ttlMillis, wrapper);
+                    wrapper.copyBodyToResponse();
+                }
+            }
+        }
+    }
+
+    private String match(String path) {
+        for (String pattern : rules.keySet()) {
+            if (pathMatcher.match(pattern, path)) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 路径加接口使用的参数(按名称排序，每个参数只取第一个值，与@RequestParam的绑定一致)，
+     * 参数顺序不同或带有无关参数的请求共用一个条目
+     */
+    private static String key(HttpServletRequest request, String[] params) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        char separator = '?';
+        for (String name : params) {
+            String value = request.getParameter(name);
+            if (value != null) {
+                key.append(separator).append(name).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, ResponseCache.Entry entry)
+            throws IOException {
+        //1.客户端已有相同版本,返回304
+        if (new ServletWebRequest(request, response).checkNotModified(entry.getEtag())) {
+            return;
+        }
+        //2.客户端支持gzip时写出压缩后的字节
+        byte[] body = entry.getBody();
+        if (entry.getGzipped() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                body = entry.getGzipped();
+            }
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.getContentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private void store(String key, long ttlMillis, ContentCachingResponseWrapper response) {
+        //1.只缓存成功的JSON响应,响应体已经压缩的不处理
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.getContentType() == null
+                || !MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(response.getContentType()))
+                || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null
+                || response.getHeader(HttpHeaders.SET_COOKIE) != null) {
+            return;
+        }
+        byte[] body = response.getContentAsByteArray();
+        if (body.length == 0) {
+            return;
+        }
+        try {
+            JSONObject result = JSONUtil.parseObj(new String(body, StandardCharsets.UTF_8));
+            if (!Boolean.TRUE.equals(result.getBool("success"))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.debug("响应{}不是Result，不缓存", key, e);
+            return;
+        }
+        //2.沿用控制器设置的ETag,没有则使用响应体的摘要
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        if (etag == null) {
+            etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        byte[] gzipped = body.length >= gzipMinSize ? ZipUtil.gzip(body) : null;
+        responseCache.put(key, new ResponseCache.Entry(response.getContentType(), etag, body, gzipped,
+                System.currentTimeMillis() + ttlMillis));
+    }
+
+    private static class Rule {
+        private final long ttlMillis;
+        private final String[] params;
+
+        private Rule(long ttlMillis, String[] params) {
+            this.ttlMillis = ttlMillis;
+            this.params = params;
+        }
+    }
+}
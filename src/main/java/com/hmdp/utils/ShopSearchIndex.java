@@ -0,0 +1,282 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.entity.Shop;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 店铺名称、商圈、地址的内存倒排索引。
+ * 文本按连续的字母数字切分后生成单字和二元组(bigram)词项，中文无需分词；
+ * 查询时所有词项都需命中，从最短的倒排链开始求交集；倒排链按权重预先排好序，取够一页即可停止扫描，
+ * 常见的单字、单个词查询第一页不需要遍历整条倒排链
+ */
+@Component
+public class ShopSearchIndex {
+
+    private static final int NAME_WEIGHT = 4;
+    private static final int AREA_WEIGHT = 2;
+    private static final int ADDRESS_WEIGHT = 1;
+    /**
+     * 得分降序、id升序
+     */
+    private static final Comparator<Map.Entry<Long, Integer>> RANKING =
+            Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                    .thenComparing(Map.Entry::getKey);
+
+    /**
+     * 词项 -> 倒排链
+     */
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+    /**
+     * 店铺id -> 该店铺的词项，更新和删除时用于清理旧词项
+     */
+    private final Map<Long, Set<String>> shopTerms = new ConcurrentHashMap<>();
+
+    /**
+     * 新增或更新店铺的索引
+     */
+    public synchronized void index(Shop shop) {
+        Long id = shop.getId();
+        remove(id);
+        //1.计算每个词项的权重,同一词项出现在多个字段时权重累加
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, shop.getName(), NAME_WEIGHT);
+        addTerms(weights, shop.getArea(), AREA_WEIGHT);
+        addTerms(weights, shop.getAddress(), ADDRESS_WEIGHT);
+        //2.写入倒排链
+        weights.forEach((term, weight) -> postings.computeIfAbsent(term, k -> new Posting()).put(id, weight));
+        shopTerms.put(id, weights.keySet());
+    }
+
+    /**
+     * 删除店铺的索引
+     */
+    public synchronized void remove(Long id) {
+        Set<String> terms = shopTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Posting posting = postings.get(term);
+            if (posting == null) {
+                continue;
+            }
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * 按关键字查询店铺id，按相关度降序、id升序排列
+     * @param keyword 关键字
+     * @param from 起始位置，小于0按0处理
+     * @param size 数量
+     * @return 店铺id列表
+     */
+    public List<Long> search(String keyword, int from, int size) {
+        from = Math.max(from, 0);
+        if (size <= 0) {
+            return Collections.emptyList();
+        }
+        //1.只需要排在前from + size个的命中
+        List<Map.Entry<Long, Integer>> top = match(keyword, null, null, (int) Math.min((long) from + size, Integer.MAX_VALUE));
+        if (from >= top.size()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(top.size() - from);
+        for (int i = from; i < top.size(); i++) {
+            ids.add(top.get(i).getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * 游标分页查询，返回排在(score, id)之后的店铺id及得分
+     * @param keyword 关键字
+     * @param score 上一页最后一个店铺的得分，为空表示第一页
+     * @param id 上一页最后一个店铺的id
+     * @param size 数量
+     */
+    public List<Map.Entry<Long, Integer>> searchAfter(String keyword, Integer score, Long id, int size) {
+        return match(keyword, score, score == null ? null : id, size);
+    }
+
+    /**
+     * 查询排在(afterScore, afterId)之后的前k个命中，已排序。
+     * 最短的倒排链按权重降序、id升序扫描，其余倒排链只按id查找权重；
+     * 一条命中的得分不超过它在最短链中的权重加上其余各链的最大权重，
+     * 已取够k个且第k个的得分超过这个上限时，后面的命中不可能进入前k个，直接停止扫描。
+     * 只有一个词项时扫描顺序就是排序顺序，取够k个即停止
+     */
+    private List<Map.Entry<Long, Integer>> match(String keyword, Integer afterScore, Long afterId, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        //1.查询词的词项,同一词项只算一次
+        Set<String> terms = new LinkedHashSet<>(tokenize(keyword));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //2.取出倒排链,任一词项不存在则没有结果
+        List<Posting> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Posting posting = postings.get(term);
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Posting::size));
+        boolean single = lists.size() == 1;
+        int othersMax = 0;
+        for (int i = 1; i < lists.size(); i++) {
+            othersMax += lists.get(i).maxWeight();
+        }
+        //3.按最短链的权重从高到低求交集,用大小为k的堆保留排在前面的命中,堆顶是其中排在最后的
+        PriorityQueue<Map.Entry<Long, Integer>> heap = new PriorityQueue<>(Math.min(k, 1024) + 1, RANKING.reversed());
+        outer:
+        for (Map.Entry<Integer, NavigableSet<Long>> group : lists.get(0).byWeight.entrySet()) {
+            int weight = group.getKey();
+            if (heap.size() >= k && weight + othersMax < heap.peek().getValue()) {
+                break;
+            }
+            Collection<Long> ids = group.getValue();
+            if (single && afterScore != null) {
+                // 只有一个词项时得分就是权重,直接跳过游标之前的部分
+                if (weight > afterScore) {
+                    continue;
+                }
+                if (weight == afterScore) {
+                    ids = group.getValue().tailSet(afterId, false);
+                }
+            }
+            inner:
+            for (Long id : ids) {
+                if (single && heap.size() >= k) {
+                    break outer;
+                }
+                int score = weight;
+                for (int i = 1; i < lists.size(); i++) {
+                    Integer w = lists.get(i).weights.get(id);
+                    if (w == null) {
+                        continue inner;
+                    }
+                    score += w;
+                }
+                if (afterScore != null && (score > afterScore || (score == afterScore && id <= afterId))) {
+                    continue;
+                }
+                Map.Entry<Long, Integer> hit = new AbstractMap.SimpleImmutableEntry<>(id, score);
+                if (heap.size() < k) {
+                    heap.add(hit);
+                } else if (RANKING.compare(hit, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(hit);
+                }
+            }
+        }
+        List<Map.Entry<Long, Integer>> top = new ArrayList<>(heap);
+        top.sort(RANKING);
+        return top;
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        Set<String> terms = new HashSet<>(tokenize(text));
+        // 索引时额外生成所有单字,保证单字查询也能命中
+        for (String term : tokenize(text)) {
+            terms.add(term.substring(0, 1));
+            terms.add(term.substring(term.length() - 1));
+        }
+        for (String term : terms) {
+            weights.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * 切词：按非字母数字字符切分，每段生成二元组；只有一个字符的段生成单字
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (StrUtil.isBlank(text)) {
+            return terms;
+        }
+        String normalized = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                addSegment(terms, normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addSegment(List<String> terms, String segment) {
+        if (segment.length() == 1) {
+            terms.add(segment);
+            return;
+        }
+        for (int i = 0; i < segment.length() - 1; i++) {
+            terms.add(segment.substring(i, i + 2));
+        }
+    }
+
+    /**
+     * 一个词项的倒排链。写入由index、remove串行执行，查询不加锁
+     */
+    private static class Posting {
+        /**
+         * 店铺id -> 权重，求交集时按id查找
+         */
+        private final Map<Long, Integer> weights = new ConcurrentHashMap<>();
+        /**
+         * 权重降序 -> 该权重的店铺id(升序)，按排序顺序扫描
+         */
+        private final ConcurrentNavigableMap<Integer, NavigableSet<Long>> byWeight =
+                new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+
+        void put(Long id, int weight) {
+            remove(id);
+            weights.put(id, weight);
+            byWeight.computeIfAbsent(weight, w -> new ConcurrentSkipListSet<>()).add(id);
+        }
+
+        void remove(Long id) {
+            Integer weight = weights.remove(id);
+            if (weight == null) {
+                return;
+            }
+            NavigableSet<Long> ids = byWeight.get(weight);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    byWeight.remove(weight);
+                }
+            }
+        }
+
+        int size() {
+            return weights.size();
+        }
+
+        boolean isEmpty() {
+            return weights.isEmpty();
+        }
+
+        int maxWeight() {
+            Map.Entry<Integer, NavigableSet<Long>> first = byWeight.firstEntry();
+            return first == null ? 0 : first.getKey();
+        }
+    }
+}
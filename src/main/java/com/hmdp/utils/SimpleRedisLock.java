@@ -0,0 +1,63 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于SET NX EX的分布式锁。值为JVM的UUID加线程id，释放和续期时用Lua脚本先比较再操作，
+ * 锁过期后被其他节点获取时不会误删或延长别人的锁
+ */
+public class SimpleRedisLock implements ILock {
+
+    private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    static {
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("lock-renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    private final String key;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * @param key 锁的完整key，如lock:counter:blog_liked
+     */
+    public SimpleRedisLock(String key, StringRedisTemplate stringRedisTemplate) {
+        this.key = key;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Override
+    public boolean tryLock(long timeoutSec) {
+        Boolean success = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, owner(), timeoutSec, TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(success);
+    }
+
+    @Override
+    public boolean renew(long timeoutSec) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(key), owner(), String.valueOf(timeoutSec));
+        return renewed != null && renewed > 0;
+    }
+
+    @Override
+    public void unlock() {
+        stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key), owner());
+    }
+
+    private static String owner() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
+}
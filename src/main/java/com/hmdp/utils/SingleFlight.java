@@ -0,0 +1,54 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个key的并发加载：第一个线程执行加载，同时到达的线程等待同一个CompletableFuture并共享结果(包括异常)。
+ * 加载结束后立即移除，之后的调用会重新加载，不缓存结果
+ * @param <K> key类型
+ */
+public class SingleFlight<K> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行或等待key对应的加载
+     * @param key 加载的key
+     * @param loader 加载函数，可以返回null
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(K key, Supplier<V> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, future);
+        //1.已有线程在加载,等待它的结果
+        if (existing != null) {
+            try {
+                return (V) existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        //2.当前线程负责加载,结束后通知等待的线程
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+}
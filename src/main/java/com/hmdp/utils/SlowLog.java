@@ -0,0 +1,132 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 慢SQL和慢Redis命令的记录：超过阈值的事件按采样率写日志并放入环形缓冲区，通过/actuator/slowlog查看最近的事件。
+ * 未超过阈值时调用方只做一次耗时比较，参数、调用方等信息只在记录时才收集
+ */
+@Slf4j
+@Component
+public class SlowLog {
+
+    private static final int MAX_TEXT_LENGTH = 256;
+
+    private final AtomicReferenceArray<SlowEvent> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final long slowSqlNanos;
+    private final long slowRedisNanos;
+    private final double sampleRate;
+
+    public SlowLog(@Value("${hmdp.slow-log.sql-threshold-ms:200}") long slowSqlMillis,
+                   @Value("${hmdp.slow-log.redis-threshold-ms:20}") long slowRedisMillis,
+                   @Value("${hmdp.slow-log.sample-rate:1.0}") double sampleRate,
+                   @Value("${hmdp.slow-log.capacity:200}") int capacity) {
+        this.slowSqlNanos = slowSqlMillis * 1_000_000;
+        this.slowRedisNanos = slowRedisMillis * 1_000_000;
+        this.sampleRate = sampleRate;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * SQL是否需要记录：超过阈值且被采样
+     */
+    public boolean isSlowSql(long nanos) {
+        return nanos >= slowSqlNanos && sampled();
+    }
+
+    /**
+     * Redis命令是否需要记录：超过阈值且被采样
+     */
+    public boolean isSlowRedis(long nanos) {
+        return nanos >= slowRedisNanos && sampled();
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * 记录一个慢事件，调用方(控制器方法)从当前请求中获取
+     * @param type SQL或REDIS
+     * @param name Mapper方法或Redis命令
+     * @param target SQL语句或key前缀
+     * @param params 参数
+     * @param rows 影响或返回的行数，未知时为-1
+     */
+    public void record(String type, String name, String target, String params, long rows, long nanos) {
+        SlowEvent event = new SlowEvent(LocalDateTime.now(), type, name, truncate(target), truncate(params),
+                rows, nanos / 1_000_000, currentHandler(), Thread.currentThread().getName());
+        log.warn("慢{} {}ms {} 调用方:{} 目标:{} 参数:{} 行数:{}", type, event.getMillis(), name,
+                event.getHandler(), event.getTarget(), event.getParams(), rows);
+        buffer.set((int) (sequence.getAndIncrement() % buffer.length()), event);
+    }
+
+    /**
+     * 最近的慢事件，按时间倒序
+     */
+    public List<SlowEvent> recent() {
+        List<SlowEvent> events = new ArrayList<>(buffer.length());
+        long last = sequence.get();
+        for (long i = last - 1; i >= 0 && i >= last - buffer.length(); i--) {
+            SlowEvent event = buffer.get((int) (i % buffer.length()));
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 当前请求匹配到的控制器方法，不在请求线程中时为null
+     */
+    private static String currentHandler() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object handler = attributes.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return method.getBeanType().getSimpleName() + "#" + method.getMethod().getName();
+        }
+        return null;
+    }
+
+    private static String truncate(String text) {
+        if (text == null || text.length() <= MAX_TEXT_LENGTH) {
+            return text;
+        }
+        return text.substring(0, MAX_TEXT_LENGTH) + "...";
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SlowEvent {
+        private LocalDateTime time;
+        private String type;
+        private String name;
+        private String target;
+        private String params;
+        private long rows;
+        private long millis;
+        private String handler;
+        private String thread;
+    }
+}
@@ -0,0 +1,108 @@
+package com.hmdp.utils;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 慢SQL追踪：超过阈值的语句记录Mapper方法、SQL、参数、行数和调用的控制器方法。
+ * 参数可能是手机号、用户id等敏感信息，只记录类型和长度，例如[Long, String(11), null]
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})})
+public class SlowSqlInterceptor implements Interceptor {
+
+    private final SlowLog slowLog;
+
+    public SlowSqlInterceptor(SlowLog slowLog) {
+        this.slowLog = slowLog;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long nanos = System.nanoTime() - start;
+        if (slowLog.isSlowSql(nanos)) {
+            Object[] args = invocation.getArgs();
+            MappedStatement statement = (MappedStatement) args[0];
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(args[1]);
+            slowLog.record("SQL", statement.getId(), boundSql.getSql().replaceAll("\\s+", " "),
+                    parameters(statement.getConfiguration(), boundSql, args[1]).toString(), rows(result), nanos);
+        }
+        return result;
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return -1;
+    }
+
+    /**
+     * 按占位符顺序取出参数，与MyBatis DefaultParameterHandler的取值方式一致，只保留类型和长度
+     */
+    private static List<String> parameters(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<String> values = new ArrayList<>();
+        MetaObject metaObject = null;
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameter);
+                }
+                value = metaObject.hasGetter(property) ? metaObject.getValue(property) : null;
+            }
+            values.add(describe(value));
+        }
+        return values;
+    }
+
+    /**
+     * 参数的类型，字符串、数组和集合附带长度，不包含值
+     */
+    private static String describe(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof CharSequence) {
+            return "String(" + ((CharSequence) value).length() + ")";
+        }
+        if (value instanceof byte[]) {
+            return "byte[" + ((byte[]) value).length + "]";
+        }
+        if (value instanceof Collection) {
+            return "list[" + ((Collection<?>) value).size() + "]";
+        }
+        return value.getClass().getSimpleName();
+    }
+}
@@ -1,8 +1,21 @@
 package com.hmdp.utils;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class SystemConstants {
-    public static final String IMAGE_UPLOAD_DIR = "D:\\lesson\\nginx-1.18.0\\html\\hmdp\\imgs\\";
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    /**
+     * 一篇笔记最多的图片数
+     */
+    public static final int BLOG_MAX_IMAGES = 9;
+    public static final int COMMENT_REPLY_SIZE = 3;
+    public static final int[] IMAGE_THUMBNAIL_WIDTHS = {200, 800};
+    public static final long IMAGE_MAX_AGE = 31536000L;
+    /**
+     * 允许上传和提供的图片扩展名，其他类型(html、svg等)可能被浏览器当作页面执行
+     */
+    public static final List<String> IMAGE_SUFFIXES = Arrays.asList("jpg", "jpeg", "png", "gif", "webp");
 }
@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 带版本号的本地快照，版本号可直接作为ETag使用
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedData<T> {
+    private String version;
+    private T data;
+    private LocalDateTime expireTime;
+}
@@ -1,17 +1,22 @@
 package com.hmdp.utils;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 @Slf4j
-public class loginInterceptor implements HandlerInterceptor {
+public class loginInterceptor implements AsyncHandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        //异步执行完成后的再次分发,第一次分发时已经校验过
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
         //1.判断是否需要拦截 判断ThreadLocal
         if (UserHolder.getUser() == null) {//没有 需要拦截 设置状态码
             response.setStatus(401);
@@ -27,4 +32,10 @@ public class loginInterceptor implements HandlerInterceptor {
         //移除用户
         UserHolder.removeUser();
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //移除用户
+        UserHolder.removeUser();
+    }
 }
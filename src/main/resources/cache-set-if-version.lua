@@ -0,0 +1,9 @@
+-- 版本号与查询数据库前读到的一致时才写入缓存，期间数据被修改(版本号增加)则放弃写入
+-- KEYS[1] 缓存的key，KEYS[2] 版本号的key
+-- ARGV[1] 查询数据库前读到的版本号(不存在时为空串)，ARGV[2] 有效期(秒)，ARGV[3] 缓存的值
+local version = redis.call('get', KEYS[2])
+if (version or '') ~= ARGV[1] then
+    return 0
+end
+redis.call('setex', KEYS[1], ARGV[2], ARGV[3])
+return 1
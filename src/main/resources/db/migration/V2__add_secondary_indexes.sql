@@ -0,0 +1,20 @@
+-- ----------------------------
+-- V1 为 db/hmdp.sql 导入的初始表结构，已有库通过 baseline 跳过
+-- ----------------------------
+
+-- 探店笔记：按用户查询、按点赞数排序
+CREATE INDEX idx_user_id ON tb_blog (user_id);
+CREATE INDEX idx_liked ON tb_blog (liked DESC, id DESC);
+
+-- 关注：查询是否关注、查询粉丝
+CREATE INDEX idx_user_id_follow_user_id ON tb_follow (user_id, follow_user_id);
+CREATE INDEX idx_follow_user_id ON tb_follow (follow_user_id);
+
+-- 优惠券：查询店铺上架的优惠券
+CREATE INDEX idx_shop_id_status ON tb_voucher (shop_id, status);
+
+-- 优惠券订单：一人一单校验
+CREATE INDEX idx_user_id_voucher_id ON tb_voucher_order (user_id, voucher_id);
+
+-- 笔记评论：查询笔记的一级评论及其回复
+CREATE INDEX idx_blog_id_parent_id ON tb_blog_comments (blog_id, parent_id);
@@ -0,0 +1,5 @@
+-- 店铺：启动预热按销量、评分取前N家
+CREATE INDEX idx_sold_score ON tb_shop (sold DESC, score DESC);
+
+-- 秒杀券：启动预热加载未结束的秒杀库存
+CREATE INDEX idx_end_time ON tb_seckill_voucher (end_time);
@@ -0,0 +1,9 @@
+-- 领取延迟队列中到期的成员：score(到期时间)不大于当前时间的成员，score改为当前时间加租期，租期内其他节点不会再领取。
+-- 处理完成后由调用方删除成员，节点在处理中宕机时，租期过后由其他节点重新领取
+-- KEYS[1] 延迟队列(ZSet)，ARGV[1] 当前时间(毫秒)，ARGV[2] 最多领取的数量，ARGV[3] 租期(毫秒)
+local members = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2])
+local leaseUntil = tonumber(ARGV[1]) + tonumber(ARGV[3])
+for _, member in ipairs(members) do
+    redis.call('zadd', KEYS[1], leaseUntil, member)
+end
+return members
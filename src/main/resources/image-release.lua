@@ -0,0 +1,16 @@
+-- 释放用户或笔记对图片的一次引用，用户只能释放自己上传产生的引用
+-- KEYS[1] 图片的引用Hash(用户id -> 上传次数，blog:{笔记id} -> 1)，ARGV[1] 用户id或blog:{笔记id}
+-- 返回-2表示图片没有任何引用记录，-1表示当前用户(笔记)没有引用该图片，否则返回剩余的引用个数，为0时可以删除文件
+if redis.call('exists', KEYS[1]) == 0 then
+    return -2
+end
+local count = tonumber(redis.call('hget', KEYS[1], ARGV[1]) or '0')
+if count <= 0 then
+    return -1
+end
+if count == 1 then
+    redis.call('hdel', KEYS[1], ARGV[1])
+else
+    redis.call('hincrby', KEYS[1], ARGV[1], -1)
+end
+return redis.call('hlen', KEYS[1])
@@ -0,0 +1,6 @@
+-- 锁的值是自己的标识时才重新设置有效期
+-- KEYS[1] 锁的key，ARGV[1] 持有者标识，ARGV[2] 有效期(秒)
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('expire', KEYS[1], ARGV[2])
+end
+return 0
@@ -0,0 +1,11 @@
+-- 订单取消后归还Redis中的库存：订单仍在支付超时队列中才归还，删除队列成员保证只归还一次
+-- KEYS[1] 支付超时队列(ZSet)，KEYS[2] 库存，KEYS[3] 下过单的用户Set
+-- ARGV[1] 支付超时队列的成员(订单id:优惠券id:用户id)，ARGV[2] 用户id
+if redis.call('zrem', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+if redis.call('exists', KEYS[2]) == 1 then
+    redis.call('incrby', KEYS[2], 1)
+end
+redis.call('srem', KEYS[3], ARGV[2])
+return 1
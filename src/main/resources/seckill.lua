@@ -0,0 +1,27 @@
+-- 秒杀下单：在秒杀时间内、库存充足且用户没有下过单时扣减库存、记录下单的用户，订单加入支付超时队列
+-- KEYS[1] 库存，KEYS[2] 下过单的用户Set，KEYS[3] 支付超时队列(ZSet)，KEYS[4] 秒杀时间(Hash，begin、end为毫秒时间戳)
+-- ARGV[1] 用户id，ARGV[2] 支付超时队列的成员(订单id:优惠券id:用户id)，ARGV[3] 支付截止时间(毫秒)，ARGV[4] 当前时间(毫秒)
+-- 返回 0 成功，1 库存不足，2 重复下单，3 秒杀时间不在Redis中，4 秒杀尚未开始，5 秒杀已经结束
+local beginTime = tonumber(redis.call('hget', KEYS[4], 'begin'))
+local endTime = tonumber(redis.call('hget', KEYS[4], 'end'))
+if beginTime == nil or endTime == nil then
+    return 3
+end
+local now = tonumber(ARGV[4])
+if now < beginTime then
+    return 4
+end
+if now > endTime then
+    return 5
+end
+local stock = tonumber(redis.call('get', KEYS[1]))
+if stock == nil or stock <= 0 then
+    return 1
+end
+if redis.call('sismember', KEYS[2], ARGV[1]) == 1 then
+    return 2
+end
+redis.call('incrby', KEYS[1], -1)
+redis.call('sadd', KEYS[2], ARGV[1])
+redis.call('zadd', KEYS[3], ARGV[3], ARGV[2])
+return 0
@@ -0,0 +1,6 @@
+-- 锁的值是自己的标识时才删除
+-- KEYS[1] 锁的key，ARGV[1] 持有者标识
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('del', KEYS[1])
+end
+return 0
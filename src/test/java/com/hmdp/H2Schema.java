@@ -0,0 +1,140 @@
+package com.hmdp;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把db/hmdp.sql(Navicat导出的MySQL脚本)转换为H2(MySQL模式)可以执行的语句并导入。
+ * 只做必要的语法转换：去掉字符集、注释、表选项、UNSIGNED等H2不支持的部分，并把字符串中的反斜杠转义改为标准SQL写法
+ */
+public class H2Schema {
+
+    public static final String URL_TEMPLATE = "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    /**
+     * 导入hmdp.sql的表结构和数据
+     */
+    public static void load(Connection connection) throws IOException, SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements()) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * 转换后的全部语句
+     */
+    public static List<String> statements() throws IOException {
+        String script;
+        try (InputStream in = new ClassPathResource("db/hmdp.sql").getInputStream()) {
+            script = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : split(script)) {
+            if (sql.startsWith("SET ")) {
+                continue;
+            }
+            if (sql.startsWith("CREATE TABLE")) {
+                sql = convertCreateTable(sql);
+            }
+            statements.add(sql.replace('`', '"'));
+        }
+        return statements;
+    }
+
+    private static String convertCreateTable(String sql) {
+        return sql
+                .replaceAll("COMMENT\\s*=?\\s*'(?:[^']|'')*'", "")
+                .replaceAll(" CHARACTER SET \\w+", "")
+                .replaceAll(" COLLATE \\w+", "")
+                .replaceAll(" USING BTREE", "")
+                .replaceAll(" UNSIGNED", "")
+                .replaceAll(" ZEROFILL", "")
+                .replace("DEFAULT '0000-00-00 00:00:00'", "DEFAULT CURRENT_TIMESTAMP")
+                .replace("`year` year", "`year` int")
+                .replaceAll("(?s)\\)\\s*ENGINE\\s*=.*$", ")");
+    }
+
+    /**
+     * 按分号拆分语句，跳过注释，字符串中的MySQL反斜杠转义转换为标准SQL
+     */
+    private static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        int n = script.length();
+        while (i < n) {
+            char c = script.charAt(i);
+            if (c == '-' && script.startsWith("--", i)) {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? n : end + 1;
+            } else if (c == '/' && script.startsWith("/*", i)) {
+                int end = script.indexOf("*/", i);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '\'') {
+                i = copyString(script, i, sb);
+            } else if (c == ';') {
+                String sql = sb.toString().trim();
+                if (!sql.isEmpty()) {
+                    statements.add(sql);
+                }
+                sb.setLength(0);
+                i++;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return statements;
+    }
+
+    private static int copyString(String script, int start, StringBuilder sb) {
+        sb.append('\'');
+        int i = start + 1;
+        while (i < script.length()) {
+            char c = script.charAt(i);
+            if (c == '\\' && i + 1 < script.length()) {
+                char next = script.charAt(i + 1);
+                switch (next) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case '\'':
+                        sb.append("''");
+                        break;
+                    default:
+                        sb.append(next);
+                }
+                i += 2;
+            } else if (c == '\'') {
+                if (i + 1 < script.length() && script.charAt(i + 1) == '\'') {
+                    sb.append("''");
+                    i += 2;
+                } else {
+                    sb.append('\'');
+                    return i + 1;
+                }
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return i;
+    }
+}
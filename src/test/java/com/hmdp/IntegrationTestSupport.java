@@ -0,0 +1,50 @@
+package com.hmdp;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+/**
+ * 集成测试的基类：与loadtest相同，用jedis-mock(Redis协议)和H2(MySQL模式，导入db/hmdp.sql)启动整个应用。
+ * 所有子类共用同一个Spring上下文、Redis和数据库，测试之间不要依赖固定的数据，各自创建需要的店铺、优惠券等
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public abstract class IntegrationTestSupport {
+
+    protected static final String ADMIN_TOKEN = "test-admin-token";
+
+    private static final RedisServer REDIS;
+    private static final String DB_URL = String.format(H2Schema.URL_TEMPLATE, "it");
+
+    static {
+        try {
+            REDIS = RedisServer.newRedisServer();
+            REDIS.start();
+            // 保持一个连接,内存库在上下文关闭前不会被删除
+            Connection keepAlive = DriverManager.getConnection(DB_URL, "sa", "");
+            H2Schema.load(keepAlive);
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws Exception {
+        String uploadDir = Files.createTempDirectory("hmdp-upload").toString();
+        registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+        registry.add("spring.datasource.url", () -> DB_URL);
+        registry.add("spring.datasource.username", () -> "sa");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.redis.host", () -> "127.0.0.1");
+        registry.add("spring.redis.port", REDIS::getBindPort);
+        registry.add("spring.redis.password", () -> "");
+        registry.add("hmdp.upload.dir", () -> uploadDir);
+        registry.add("hmdp.admin.token", () -> ADMIN_TOKEN);
+        registry.add("logging.level.com.hmdp", () -> "info");
+    }
+}
@@ -0,0 +1,40 @@
+package com.hmdp.config;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.utils.AdminAuthFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /actuator/prometheus需要管理员token；Redis命令和SQL语句的指标都已注册
+ */
+class MetricsConfigTests extends IntegrationTestSupport {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void prometheusRequiresAdminToken() {
+        //1.产生Redis命令和SQL
+        restTemplate.getForObject("/shop/1", String.class);
+        //2.没有token时拒绝
+        assertEquals(HttpStatus.UNAUTHORIZED, restTemplate.getForEntity("/actuator/prometheus", String.class).getStatusCode());
+        //3.带上token可以采集
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(AdminAuthFilter.TOKEN_HEADER, ADMIN_TOKEN);
+        ResponseEntity<String> response = restTemplate.exchange("/actuator/prometheus", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("redis_commands_seconds_count{"));
+        assertTrue(response.getBody().contains("mybatis_statements_seconds_count{"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.hmdp.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range解析：有效区间、416(空数组)、按整个文件返回(null)；只提供允许的图片类型
+ */
+class ImageControllerTests {
+
+    private static final String ETAG = "\"abc\"";
+    private static final long LAST_MODIFIED = 1_640_000_000_000L;
+    private static final long SIZE = 1000;
+
+    @Test
+    void parseRange() {
+        assertArrayEquals(new long[]{0, 99}, range("bytes=0-99"));
+        assertArrayEquals(new long[]{900, 999}, range("bytes=900-"));
+        assertArrayEquals(new long[]{900, 999}, range("bytes=-100"));
+        assertArrayEquals(new long[]{0, 999}, range("bytes=-5000"));
+        assertArrayEquals(new long[]{500, 999}, range("bytes=500-5000"));
+        //1.没有Range、多个区间或格式错误,返回整个文件
+        assertNull(range(null));
+        assertNull(range("bytes=0-1,5-6"));
+        assertNull(range("items=0-1"));
+        assertNull(range("bytes=a-b"));
+        assertNull(range("bytes=10-5"));
+    }
+
+    @Test
+    void unsatisfiableRangeIs416() {
+        assertEquals(0, range("bytes=1000-").length);
+        assertEquals(0, range("bytes=2000-3000").length);
+        assertEquals(0, range("bytes=-0").length);
+    }
+
+    @Test
+    void ifRangeMismatchReturnsWholeFile() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-99");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+        assertNull(ImageController.parseRange(request, ETAG, LAST_MODIFIED, SIZE));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-99");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        assertArrayEquals(new long[]{0, 99}, ImageController.parseRange(request, ETAG, LAST_MODIFIED, SIZE));
+    }
+
+    @Test
+    void onlyImagesAreServed() {
+        assertTrue(ImageController.isImage("/blogs/1/2/abc.jpg"));
+        assertTrue(ImageController.isImage("/blogs/1/2/abc.WEBP"));
+        assertFalse(ImageController.isImage("/blogs/1/2/abc.html"));
+        assertFalse(ImageController.isImage("/blogs/1/2/abc.svg"));
+        assertFalse(ImageController.isImage("/blogs/1/2/abc"));
+        assertFalse(ImageController.isImage("/.staging/abc.jpg"));
+    }
+
+    private static long[] range(String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (header != null) {
+            request.addHeader(HttpHeaders.RANGE, header);
+        }
+        return ImageController.parseRange(request, ETAG, LAST_MODIFIED, SIZE);
+    }
+}
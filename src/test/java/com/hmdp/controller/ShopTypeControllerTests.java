@@ -0,0 +1,92 @@
+package com.hmdp.controller;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopTypeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 店铺类型列表的ETag：控制器以快照版本作为ETag，响应缓存沿用该ETag；If-None-Match一致时返回304，不一致时返回列表
+ */
+class ShopTypeControllerTests extends IntegrationTestSupport {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ShopTypeController shopTypeController;
+
+    @Autowired
+    private IShopTypeService typeService;
+
+    @Test
+    void controllerReturns304ForCurrentVersion() {
+        String etag = "\"" + typeService.queryTypeList().getVersion() + "\"";
+        //1.没有If-None-Match,返回列表和ETag
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Result result = shopTypeController.queryTypeList(webRequest(null, response));
+        assertTrue(result.getSuccess());
+        assertFalse(((List<?>) result.getData()).isEmpty());
+        assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        //2.客户端版本一致,返回304,不写响应体
+        response = new MockHttpServletResponse();
+        assertNull(shopTypeController.queryTypeList(webRequest(etag, response)));
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        //3.客户端版本过期,返回列表
+        response = new MockHttpServletResponse();
+        assertNotNull(shopTypeController.queryTypeList(webRequest("\"old\"", response)));
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    void httpReturns304ForCurrentVersion() {
+        //1.第一次请求返回列表,响应缓存沿用控制器的ETag
+        ResponseEntity<String> first = get(null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertEquals("\"" + typeService.queryTypeList().getVersion() + "\"", etag);
+        //2.带上ETag再次请求,返回304且没有响应体
+        ResponseEntity<String> notModified = get(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(etag, notModified.getHeaders().getETag());
+        //3.版本不一致,返回完整的列表
+        ResponseEntity<String> stale = get("\"old\"");
+        assertEquals(HttpStatus.OK, stale.getStatusCode());
+        assertEquals(first.getBody(), stale.getBody());
+    }
+
+    private ResponseEntity<String> get(String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return restTemplate.exchange("/shop-type/list", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private static ServletWebRequest webRequest(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/shop-type/list");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+}
@@ -0,0 +1,385 @@
+package com.hmdp.mapper;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.LoginFormDTO;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IUserService;
+import com.hmdp.service.impl.BlogCommentsServiceImpl;
+import com.hmdp.service.impl.ShopServiceImpl;
+import com.hmdp.utils.CacheInvalidation;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.CounterFlushedEvent;
+import com.hmdp.utils.CounterType;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.UserHolder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.ResolverUtil;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * 在集成测试的H2(MySQL模式，导入hmdp.sql并执行db/migration中的迁移脚本)中调用各业务方法，
+ * 由MyBatis拦截器记录实际发出的SQL，用同一组参数执行EXPLAIN，出现全表扫描即失败。
+ * 新增查询时需要在shouldUseIndex()中调用对应的方法；Mapper XML和注解中自定义的语句没有被调用到时最后一项检查失败。
+ * 以下查询本身就是全表读取，不在检查范围内：店铺类型列表(表中只有十几行且有本地缓存)、不带条件的店铺分页
+ */
+class QueryPlanTests extends IntegrationTestSupport {
+
+    private static final String PREFIX = "com.hmdp.mapper.";
+
+    /**
+     * 允许全表扫描的语句
+     */
+    private static final Set<String> FULL_SCAN_ALLOWED = Collections.singleton("ShopTypeMapper.selectList");
+
+    private static final ExplainInterceptor EXPLAIN = new ExplainInterceptor();
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IShopService shopService;
+
+    @Autowired
+    private IBlogService blogService;
+
+    @Autowired
+    private IBlogCommentsService blogCommentsService;
+
+    @Autowired
+    private VoucherMapper voucherMapper;
+
+    @Autowired
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Autowired
+    private CounterMapper counterMapper;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    /**
+     * 所有调用中出现过的语句
+     */
+    private final Set<String> executed = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> shouldUseIndex() {
+        //1.拦截器加到共用的上下文中,只记录当前测试线程(及其创建的线程)发出的语句
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        if (!configuration.getInterceptors().contains(EXPLAIN)) {
+            configuration.addInterceptor(EXPLAIN);
+        }
+        //2.准备带回复的评论
+        Long blogId = createBlog();
+        Long commentId = comment(blogId, 0L);
+        comment(blogId, commentId);
+        //3.调用各业务方法,有缓存的查询直接调用缓存未命中时的加载方法
+        return Stream.of(
+                // 用户
+                check("UserService.login", () -> {
+                    String phone = "13686869696";
+                    stringRedisTemplate.opsForValue().set(LOGIN_CODE_KEY + phone, "123456");
+                    LoginFormDTO form = new LoginFormDTO();
+                    form.setPhone(phone);
+                    form.setCode("123456");
+                    assertTrue(userService.login(form, new MockHttpSession()).getSuccess());
+                }),
+                check("UserService.getById", () -> userService.getById(1L)),
+                check("UserService.listByIds", () -> userService.listByIds(Arrays.asList(1L, 2L, 5L))),
+                // 店铺
+                check("ShopService.getById", () -> shopService.getById(1L)),
+                check("ShopService.listByIds", () -> shopService.listByIds(Arrays.asList(1L, 2L, 3L))),
+                check("ShopService.queryShopByType", () -> shopService.queryShopByType(1, 2, null)),
+                check("ShopService.queryShopByType(cursor)",
+                        () -> shopService.queryShopByType(1, 1, CursorUtils.encode(3))),
+                check("ShopService.queryShopByName(cursor)",
+                        () -> shopService.queryShopByName(null, 1, CursorUtils.encode(0, 3))),
+                check("ShopService.initSearchIndex", () -> ((ShopServiceImpl) shopService).initSearchIndex()),
+                check("CacheInvalidator.reindexShops",
+                        () -> cacheInvalidator.invalidateFromBinlog(new CacheInvalidation().addShop(1L))),
+                // 探店笔记
+                check("BlogService.queryMyBlog", () -> {
+                    login(2L);
+                    blogService.queryMyBlog(1, null);
+                }),
+                check("BlogService.queryMyBlog(cursor)", () -> {
+                    login(2L);
+                    blogService.queryMyBlog(1, CursorUtils.encode(10));
+                }),
+                check("BlogService.queryHotBlog", () -> blogService.queryHotBlog(1, null)),
+                check("BlogService.queryHotBlog(cursor)", () -> blogService.queryHotBlog(1, CursorUtils.encode(1, 5))),
+                check("BlogService.getById", () -> blogService.getById(blogId)),
+                check("CounterMapper.incr", () -> {
+                    // 增量为0,不改变数据
+                    Map<Long, Long> deltas = new HashMap<>();
+                    deltas.put(1L, 0L);
+                    deltas.put(2L, 0L);
+                    for (CounterType type : CounterType.values()) {
+                        counterMapper.incr(type.getTable(), type.getColumn(), type.getIdColumn(), deltas);
+                    }
+                }),
+                // 笔记评论
+                check("BlogCommentsService.queryComments", () -> {
+                    cacheInvalidator.invalidateBlogComments(blogId);
+                    blogCommentsService.queryComments(blogId, 1);
+                }),
+                check("BlogCommentsService.getById", () -> blogCommentsService.getById(commentId)),
+                check("BlogCommentsService.onCounterFlushed", () -> ((BlogCommentsServiceImpl) blogCommentsService)
+                        .onCounterFlushed(new CounterFlushedEvent(CounterType.COMMENT_LIKED,
+                                Collections.singleton(commentId)))),
+                // 优惠券
+                check("VoucherMapper.queryVoucherOfShop", () -> voucherMapper.queryVoucherOfShop(1L)),
+                check("SeckillVoucherService.getById", () -> seckillVoucherService.getById(1L)),
+                // 启动预热
+                check("CacheWarmer.start", () -> {
+                    cacheWarmer.start();
+                    long deadline = System.currentTimeMillis() + 30000;
+                    while (!cacheWarmer.isFinished() && System.currentTimeMillis() < deadline) {
+                        sleep();
+                    }
+                    assertTrue(cacheWarmer.isFinished());
+                }),
+                dynamicTest("每条自定义语句都被调用", this::everyMapperStatementIsChecked));
+    }
+
+    /**
+     * 执行一次调用，记录期间发出的SQL，每条都不能全表扫描
+     */
+    private DynamicTest check(String name, Runnable call) {
+        return dynamicTest(name, () -> {
+            List<Explained> explained = Collections.synchronizedList(new ArrayList<>());
+            ExplainInterceptor.RECORDS.set(explained);
+            try {
+                call.run();
+            } finally {
+                ExplainInterceptor.RECORDS.remove();
+            }
+            List<Explained> result;
+            synchronized (explained) {
+                result = new ArrayList<>(explained);
+            }
+            assertFalse(result.isEmpty(), () -> name + " 没有执行SQL");
+            for (Explained e : result) {
+                executed.add(e.statement);
+                assertTrue(e.error == null, () -> name + " " + e.statement + " EXPLAIN失败：\n" + e.sql + "\n" + e.error);
+                if (!FULL_SCAN_ALLOWED.contains(e.statement)) {
+                    assertFalse(e.plan.contains(".tableScan"),
+                            () -> name + " " + e.statement + " 全表扫描：\n" + e.sql + "\n" + e.plan);
+                }
+            }
+        });
+    }
+
+    /**
+     * 用MyBatis(不含MyBatis-Plus注入的通用方法)解析所有Mapper，得到XML和注解中自定义的语句，
+     * 每一条都要在前面的调用中执行过
+     */
+    private void everyMapperStatementIsChecked() throws Exception {
+        //1.解析Mapper XML,再加载没有XML的Mapper接口中的注解
+        Configuration configuration = new Configuration();
+        for (Resource xml : new PathMatchingResourcePatternResolver().getResources("classpath*:/mapper/**/*.xml")) {
+            try (InputStream in = xml.getInputStream()) {
+                new XMLMapperBuilder(in, configuration, xml.toString(), configuration.getSqlFragments()).parse();
+            }
+        }
+        ResolverUtil<Object> resolver = new ResolverUtil<>();
+        resolver.find(new ResolverUtil.IsA(Object.class), "com.hmdp.mapper");
+        for (Class<?> mapper : resolver.getClasses()) {
+            if (mapper.isInterface() && !configuration.hasMapper(mapper)) {
+                configuration.addMapper(mapper);
+            }
+        }
+        //2.语句id去掉包名,与执行过的语句比较
+        Set<String> missing = new TreeSet<>();
+        for (String id : configuration.getMappedStatementNames()) {
+            if (id.startsWith(PREFIX) && !id.contains("!") && !executed.contains(id.substring(PREFIX.length()))) {
+                missing.add(id.substring(PREFIX.length()));
+            }
+        }
+        assertTrue(missing.isEmpty(), () -> "以下语句没有被调用：" + missing);
+    }
+
+    private Long createBlog() {
+        Blog blog = new Blog();
+        blog.setShopId(1L);
+        blog.setUserId(1L);
+        blog.setTitle("执行计划");
+        blog.setImages("");
+        blog.setContent("执行计划");
+        blogService.save(blog);
+        return blog.getId();
+    }
+
+    private Long comment(Long blogId, Long parentId) {
+        login(1L);
+        BlogComments comment = new BlogComments();
+        comment.setBlogId(blogId);
+        comment.setParentId(parentId);
+        comment.setContent("执行计划");
+        Result result = blogCommentsService.saveComment(comment);
+        assertTrue(result.getSuccess());
+        return (Long) result.getData();
+    }
+
+    private static void login(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Explained {
+        private final String statement;
+        private final String sql;
+        private final String plan;
+        private final String error;
+
+        Explained(String statement, String sql, String plan, String error) {
+            this.statement = statement;
+            this.sql = sql;
+            this.plan = plan;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Executor上记录当前执行的语句，语句设置参数后在同一个连接上用同一组参数执行EXPLAIN。
+     * 只在RECORDS有值的线程中生效，线程池中由测试线程创建的线程继承该值，预热等异步加载也能记录
+     */
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+            @Signature(type = StatementHandler.class, method = "parameterize", args = Statement.class)})
+    private static class ExplainInterceptor implements Interceptor {
+
+        private static final InheritableThreadLocal<List<Explained>> RECORDS = new InheritableThreadLocal<>();
+
+        private static final ThreadLocal<MappedStatement> CURRENT = new ThreadLocal<>();
+
+        private static final Set<SqlCommandType> EXPLAINED_TYPES =
+                EnumSet.of(SqlCommandType.SELECT, SqlCommandType.UPDATE, SqlCommandType.DELETE);
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            //1.Executor:记录语句,执行完后清除
+            if (invocation.getTarget() instanceof Executor) {
+                MappedStatement previous = CURRENT.get();
+                CURRENT.set((MappedStatement) invocation.getArgs()[0]);
+                try {
+                    return invocation.proceed();
+                } finally {
+                    CURRENT.set(previous);
+                }
+            }
+            //2.StatementHandler:参数设置完成后EXPLAIN
+            Object result = invocation.proceed();
+            List<Explained> records = RECORDS.get();
+            MappedStatement ms = CURRENT.get();
+            if (records == null || ms == null || !EXPLAINED_TYPES.contains(ms.getSqlCommandType())) {
+                return result;
+            }
+            String statement = ms.getId().startsWith(PREFIX) ? ms.getId().substring(PREFIX.length()) : ms.getId();
+            StatementHandler handler = (StatementHandler) invocation.getTarget();
+            BoundSql boundSql = handler.getBoundSql();
+            Statement jdbcStatement = (Statement) invocation.getArgs()[0];
+            // 不影响原语句的执行,EXPLAIN失败时记录异常,由测试报告
+            try {
+                String plan = explain(jdbcStatement, handler, boundSql);
+                records.add(new Explained(statement, boundSql.getSql(), plan, null));
+            } catch (SQLException | RuntimeException e) {
+                records.add(new Explained(statement, boundSql.getSql(), "", e.toString()));
+            }
+            return result;
+        }
+
+        private static String explain(Statement jdbcStatement, StatementHandler handler, BoundSql boundSql)
+                throws SQLException {
+            try (PreparedStatement ps = jdbcStatement.getConnection().prepareStatement("EXPLAIN " + boundSql.getSql())) {
+                handler.getParameterHandler().setParameters(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                    return plan.toString();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import com.hmdp.service.IBlogService;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 评论点赞：每个用户只计一次，再次点赞为取消；点赞数经计数器写回数据库，第一页缓存中的点赞数与数据库一致
+ */
+class BlogCommentsServiceImplTests extends IntegrationTestSupport {
+
+    @Autowired
+    private IBlogCommentsService blogCommentsService;
+
+    @Autowired
+    private IBlogService blogService;
+
+    @Autowired
+    private CounterService counterService;
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    void commentOnMissingBlogIsRejected() {
+        login(1L);
+        BlogComments comment = new BlogComments();
+        comment.setBlogId(Long.MAX_VALUE);
+        comment.setContent("不存在的笔记");
+        assertFalse(blogCommentsService.saveComment(comment).getSuccess());
+        assertFalse(blogCommentsService.likeComment(Long.MAX_VALUE).getSuccess());
+    }
+
+    @Test
+    void likeIsCountedOncePerUser() throws InterruptedException {
+        Long blogId = createBlog();
+        Long commentId = comment(blogId);
+        //1.同一用户重复点赞是取消点赞
+        login(1L);
+        assertTrue(blogCommentsService.likeComment(commentId).getSuccess());
+        assertEquals(1, likedOnFirstPage(blogId));
+        blogCommentsService.likeComment(commentId);
+        assertEquals(0, likedOnFirstPage(blogId));
+        blogCommentsService.likeComment(commentId);
+        login(2L);
+        blogCommentsService.likeComment(commentId);
+        assertEquals(2, likedOnFirstPage(blogId));
+        //2.写回数据库后,缓存中的第一页被删除,点赞数不会少算
+        counterService.flushToRedis();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (blogCommentsService.getById(commentId).getLiked() != 2 && System.currentTimeMillis() < deadline) {
+            counterService.flushToDb();
+            Thread.sleep(50);
+        }
+        assertEquals(2, blogCommentsService.getById(commentId).getLiked());
+        assertEquals(2, likedOnFirstPage(blogId));
+    }
+
+    private Long createBlog() {
+        Blog blog = new Blog();
+        blog.setShopId(1L);
+        blog.setUserId(1L);
+        blog.setTitle("测试笔记");
+        blog.setImages("");
+        blog.setContent("测试内容");
+        blogService.save(blog);
+        return blog.getId();
+    }
+
+    private Long comment(Long blogId) {
+        login(1L);
+        BlogComments comment = new BlogComments();
+        comment.setBlogId(blogId);
+        comment.setContent("测试评论");
+        Result result = blogCommentsService.saveComment(comment);
+        assertTrue(result.getSuccess());
+        return (Long) result.getData();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int likedOnFirstPage(Long blogId) {
+        List<BlogComments> comments = (List<BlogComments>) blogCommentsService.queryComments(blogId, 1).getData();
+        return comments.get(0).getLiked();
+    }
+
+    private static void login(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+    }
+}
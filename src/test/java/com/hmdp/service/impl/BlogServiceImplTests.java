@@ -0,0 +1,162 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IImageService;
+import com.hmdp.utils.ImageStorage;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 笔记引用的图片在笔记删除前不会被上传者删除；引用计数之前上传的旧图片可以删除；
+ * 热门笔记按(liked, id)游标分页的结果与完整排序一致
+ */
+class BlogServiceImplTests extends IntegrationTestSupport {
+
+    @Autowired
+    private IBlogService blogService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    void blogKeepsImageUntilDeleted() throws IOException {
+        login(1L);
+        String image = upload();
+        Result saved = blogService.saveBlog(blog(image));
+        assertTrue(saved.getSuccess());
+        Long blogId = (Long) saved.getData();
+        //1.上传者释放自己的引用,笔记仍在使用,文件保留
+        assertTrue(imageService.deleteBlogImage(image).getSuccess());
+        assertTrue(imageStorage.exists(image));
+        //2.只有作者可以删除笔记,删除后没有引用的图片被删除
+        login(2L);
+        assertFalse(blogService.deleteBlog(blogId).getSuccess());
+        login(1L);
+        assertTrue(blogService.deleteBlog(blogId).getSuccess());
+        assertNull(blogService.getById(blogId));
+        assertFalse(imageStorage.exists(image));
+    }
+
+    @Test
+    void blogWithMissingImageIsRejected() throws IOException {
+        login(1L);
+        String image = upload();
+        String missing = "/blogs/0/0/" + IdUtil.fastSimpleUUID() + IdUtil.fastSimpleUUID() + ".png";
+        long before = blogService.count();
+        assertFalse(blogService.saveBlog(blog(image + "," + missing)).getSuccess());
+        assertEquals(before, blogService.count());
+        //笔记的引用已撤销,上传者可以删除图片
+        assertTrue(imageService.deleteBlogImage(image).getSuccess());
+        assertFalse(imageStorage.exists(image));
+    }
+
+    @Test
+    void legacyImageCanBeDeleted() throws IOException {
+        login(1L);
+        String unused = legacyImage();
+        assertTrue(imageService.deleteBlogImage(unused).getSuccess());
+        assertFalse(imageStorage.exists(unused));
+        //旧笔记中的图片没有引用记录,按笔记内容判断是否正在使用
+        String used = legacyImage();
+        Blog blog = blog(used);
+        blog.setUserId(1L);
+        blogService.save(blog);
+        assertFalse(imageService.deleteBlogImage(used).getSuccess());
+        assertTrue(imageStorage.exists(used));
+    }
+
+    @Test
+    void hotBlogCursorPagingMatchesOrdering() {
+        //1.点赞数大量相同的笔记,分页边界落在相同点赞数的中间
+        for (int i = 0; i < 25; i++) {
+            Blog blog = blog("");
+            blog.setUserId(1L);
+            blog.setLiked(i % 3);
+            blogService.save(blog);
+        }
+        List<Long> expected = blogService.query().orderByDesc("liked", "id").list().stream()
+                .map(Blog::getId).collect(Collectors.toList());
+        //2.依次按游标取完,不重复不遗漏,顺序与完整排序一致
+        List<Long> paged = new ArrayList<>();
+        String cursor = "";
+        do {
+            Result result = blogService.queryHotBlog(1, cursor);
+            assertTrue(result.getSuccess());
+            CursorResult page = (CursorResult) result.getData();
+            page.getList().forEach(blog -> paged.add(((Blog) blog).getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(expected, paged);
+        //3.游标格式错误
+        assertFalse(blogService.queryHotBlog(1, "not-a-cursor").getSuccess());
+    }
+
+    private String upload() throws IOException {
+        // 随机颜色,每次内容不同,文件名不同
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, RandomUtil.randomInt(1 << 24));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        Result result = imageService.uploadBlogImage(
+                new MockMultipartFile("file", "a.png", "image/png", png.toByteArray()));
+        assertTrue(result.getSuccess());
+        // 文件名是写入时计算的内容摘要
+        assertEquals(ImageServiceImpl.createFileName(DigestUtil.sha256Hex(png.toByteArray()), "png"), result.getData());
+        return (String) result.getData();
+    }
+
+    private String legacyImage() throws IOException {
+        String name = "/blogs/3/7/" + UUID.randomUUID() + ".jpg";
+        imageStorage.store(name, new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}));
+        return name;
+    }
+
+    private static Blog blog(String images) {
+        Blog blog = new Blog();
+        blog.setShopId(1L);
+        blog.setTitle("测试笔记");
+        blog.setContent("测试内容");
+        blog.setImages(images);
+        return blog;
+    }
+
+    private static void login(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+    }
+}
@@ -0,0 +1,47 @@
+package com.hmdp.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 按文件头识别图片类型，识别后流回到开头，不依赖上传的扩展名
+ */
+class ImageServiceImplTests {
+
+    @Test
+    void imageTypeFromMagicBytes() throws IOException {
+        assertEquals("jpg", type(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10));
+        assertEquals("png", type(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D));
+        assertEquals("gif", type('G', 'I', 'F', '8', '9', 'a', 1, 0));
+        assertEquals("webp", type('R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8'));
+        //1.扩展名是图片但内容不是
+        assertNull(type('<', 'h', 't', 'm', 'l', '>', '<', 's', 'c', 'r', 'i', 'p', 't', '>'));
+        assertNull(type('R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'A', 'V', 'E'));
+        assertNull(type(0xFF, 0xD8));
+        assertNull(type());
+    }
+
+    @Test
+    void streamIsResetAfterDetection() throws IOException {
+        byte[] bytes = "GIF89a-image-body".getBytes(StandardCharsets.US_ASCII);
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(bytes));
+        assertEquals("gif", ImageServiceImpl.imageType(in));
+        assertEquals('G', in.read());
+    }
+
+    private static String type(int... header) throws IOException {
+        byte[] bytes = new byte[header.length];
+        for (int i = 0; i < header.length; i++) {
+            bytes[i] = (byte) header[i];
+        }
+        return ImageServiceImpl.imageType(new BufferedInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,234 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Voucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.entity.VoucherOrder.STATUS_CANCELLED;
+import static com.hmdp.entity.VoucherOrder.STATUS_PAID;
+import static com.hmdp.entity.VoucherOrder.STATUS_UNPAID;
+import static com.hmdp.utils.RedisConstants.ORDER_PAY_TIMEOUT_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 秒杀时间在Redis中校验；并发的支付和取消只有一个成功；库存只归还一次；
+ * 领取后宕机的订单在租期过后被重新领取；没有写入数据库的订单超过宽限期后归还库存。
+ * 超时任务在后台同时运行，断言只依赖最终状态
+ */
+class VoucherOrderServiceImplTests extends IntegrationTestSupport {
+
+    @Autowired
+    private IVoucherOrderService voucherOrderService;
+
+    @Autowired
+    private IVoucherService voucherService;
+
+    @Autowired
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    void seckillTimeIsCheckedInRedis() {
+        Long voucherId = addSeckillVoucher(10, LocalDateTime.now().plusDays(1));
+        //1.第一次从数据库读取秒杀时间写入Redis
+        login(1L);
+        assertEquals("秒杀尚未开始", voucherOrderService.seckillVoucher(voucherId).getErrorMsg());
+        assertTrue(stringRedisTemplate.hasKey(SECKILL_TIME_KEY + voucherId));
+        assertEquals("10", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        //2.修改开始时间后删除Redis中的秒杀时间,下单时重新读取
+        Voucher update = new Voucher();
+        update.setId(voucherId);
+        update.setBeginTime(LocalDateTime.now().minusDays(1));
+        voucherService.updateVoucher(update);
+        assertTrue(voucherOrderService.seckillVoucher(voucherId).getSuccess());
+        assertEquals("9", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        assertEquals("秒杀券不存在", voucherOrderService.seckillVoucher(Long.MAX_VALUE).getErrorMsg());
+    }
+
+    @Test
+    void concurrentPaidAndCancelOnlyOneWins() throws Exception {
+        int orders = 20;
+        Long voucherId = addSeckillVoucher(orders, LocalDateTime.now().minusDays(1));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        int paidCount = 0;
+        try {
+            for (long userId = 1; userId <= orders; userId++) {
+                Long orderId = seckill(voucherId, userId);
+                //1.支付渠道的回调和用户取消同时到达
+                CountDownLatch start = new CountDownLatch(1);
+                long user = userId;
+                Future<Result> paid = pool.submit(() -> {
+                    start.await();
+                    return voucherOrderService.paid(orderId, 1);
+                });
+                Future<Result> cancelled = pool.submit(() -> {
+                    start.await();
+                    login(user);
+                    try {
+                        return voucherOrderService.cancel(orderId);
+                    } finally {
+                        UserHolder.removeUser();
+                    }
+                });
+                start.countDown();
+                boolean paidWins = paid.get(10, TimeUnit.SECONDS).getSuccess();
+                assertTrue(paidWins ^ cancelled.get(10, TimeUnit.SECONDS).getSuccess());
+                //2.订单状态与成功的一方一致
+                assertEquals(paidWins ? STATUS_PAID : STATUS_CANCELLED, voucherOrderService.getById(orderId).getStatus());
+                if (paidWins) {
+                    paidCount++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        //3.只有取消的订单归还库存,数据库和Redis一致
+        assertEquals(orders - paidCount, seckillVoucherService.getById(voucherId).getStock());
+        assertEquals(String.valueOf(orders - paidCount), stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+    }
+
+    @Test
+    void stockIsReleasedOnce() {
+        Long voucherId = addSeckillVoucher(5, LocalDateTime.now().minusDays(1));
+        Long orderId = seckill(voucherId, 1L);
+        VoucherOrder order = voucherOrderService.getById(orderId);
+        //1.数据库中已取消,归还Redis库存之前宕机
+        assertTrue(voucherOrderService.cancelUnpaidOrder(order));
+        assertEquals("4", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        //2.订单仍在支付超时队列中,到期后由超时任务归还,重复执行只归还一次
+        String member = member(order);
+        stringRedisTemplate.opsForZSet().add(ORDER_PAY_TIMEOUT_KEY, member, 0);
+        cancelTimeoutOrders();
+        cancelTimeoutOrders();
+        assertEquals("5", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        assertNull(stringRedisTemplate.opsForZSet().score(ORDER_PAY_TIMEOUT_KEY, member));
+        assertFalse(stringRedisTemplate.opsForSet().isMember(SECKILL_ORDER_KEY + voucherId, "1"));
+        //3.再次取消失败,不会再归还
+        login(1L);
+        assertFalse(voucherOrderService.cancel(orderId).getSuccess());
+        assertEquals("5", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        assertEquals(5, seckillVoucherService.getById(voucherId).getStock());
+    }
+
+    @Test
+    void claimedOrderIsReclaimedAfterLease() {
+        Long voucherId = addSeckillVoucher(5, LocalDateTime.now().minusDays(1));
+        Long orderId = seckill(voucherId, 1L);
+        String member = member(voucherOrderService.getById(orderId));
+        //1.其他节点领取后宕机,租期内不会被再次领取
+        stringRedisTemplate.opsForZSet().add(ORDER_PAY_TIMEOUT_KEY, member, System.currentTimeMillis() + 60000);
+        cancelTimeoutOrders();
+        assertEquals(STATUS_UNPAID, voucherOrderService.getById(orderId).getStatus());
+        //2.租期过后重新领取,取消订单并归还库存
+        stringRedisTemplate.opsForZSet().add(ORDER_PAY_TIMEOUT_KEY, member, System.currentTimeMillis() - 1);
+        cancelTimeoutOrders();
+        assertEquals(STATUS_CANCELLED, voucherOrderService.getById(orderId).getStatus());
+        assertEquals("5", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        assertEquals(5, seckillVoucherService.getById(voucherId).getStock());
+    }
+
+    @Test
+    void missingOrderReleasesStockAfterGrace() {
+        Long voucherId = addSeckillVoucher(5, LocalDateTime.now().minusDays(1));
+        //1.Redis中已下单,订单没有写入数据库:一个在宽限期内,一个下单时间在一小时前,已超过宽限期
+        long recentId = IdUtil.getSnowflake().nextId();
+        long oldId = recentId - (TimeUnit.HOURS.toMillis(1) << 22);
+        String recent = missingOrder(voucherId, recentId, 1L);
+        String old = missingOrder(voucherId, oldId, 2L);
+        assertEquals("3", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        cancelTimeoutOrders();
+        //2.超过宽限期,写入已取消的订单占住id,归还Redis中的库存,数据库中的库存没有扣减
+        VoucherOrder cancelled = voucherOrderService.getById(oldId);
+        assertNotNull(cancelled);
+        assertEquals(STATUS_CANCELLED, cancelled.getStatus());
+        assertNull(stringRedisTemplate.opsForZSet().score(ORDER_PAY_TIMEOUT_KEY, old));
+        assertFalse(stringRedisTemplate.opsForSet().isMember(SECKILL_ORDER_KEY + voucherId, "2"));
+        assertEquals(5, seckillVoucherService.getById(voucherId).getStock());
+        //3.宽限期内重新入队,等待可能未提交的下单事务
+        assertNull(voucherOrderService.getById(recentId));
+        Double score = stringRedisTemplate.opsForZSet().score(ORDER_PAY_TIMEOUT_KEY, recent);
+        assertNotNull(score);
+        assertTrue(stringRedisTemplate.opsForSet().isMember(SECKILL_ORDER_KEY + voucherId, "1"));
+        assertEquals("4", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+    }
+
+    private String missingOrder(Long voucherId, long orderId, Long userId) {
+        String member = orderId + ":" + voucherId + ":" + userId;
+        stringRedisTemplate.opsForValue().decrement(SECKILL_STOCK_KEY + voucherId);
+        stringRedisTemplate.opsForSet().add(SECKILL_ORDER_KEY + voucherId, userId.toString());
+        stringRedisTemplate.opsForZSet().add(ORDER_PAY_TIMEOUT_KEY, member, System.currentTimeMillis() - 1);
+        return member;
+    }
+
+    private void cancelTimeoutOrders() {
+        ((VoucherOrderServiceImpl) voucherOrderService).cancelTimeoutOrders();
+    }
+
+    private Long seckill(Long voucherId, Long userId) {
+        login(userId);
+        try {
+            Result result = voucherOrderService.seckillVoucher(voucherId);
+            assertTrue(result.getSuccess(), result.getErrorMsg());
+            return (Long) result.getData();
+        } finally {
+            UserHolder.removeUser();
+        }
+    }
+
+    private Long addSeckillVoucher(int stock, LocalDateTime beginTime) {
+        Voucher voucher = new Voucher();
+        voucher.setShopId(1L);
+        voucher.setTitle("测试秒杀券");
+        voucher.setPayValue(8000L);
+        voucher.setActualValue(10000L);
+        voucher.setType(1);
+        voucher.setStatus(1);
+        voucher.setStock(stock);
+        voucher.setBeginTime(beginTime);
+        voucher.setEndTime(LocalDateTime.now().plusDays(3));
+        voucherService.addSeckillVoucher(voucher);
+        return voucher.getId();
+    }
+
+    private static String member(VoucherOrder order) {
+        return order.getId() + ":" + order.getVoucherId() + ":" + order.getUserId();
+    }
+
+    private static void login(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+    }
+}
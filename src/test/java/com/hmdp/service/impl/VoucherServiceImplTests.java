@@ -0,0 +1,128 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.entity.Voucher;
+import com.hmdp.service.IVoucherService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 秒杀库存在事务提交后才写入Redis；修改优惠券需要管理员token；优惠券列表用Redis中的实时库存覆盖缓存的库存
+ */
+class VoucherServiceImplTests extends IntegrationTestSupport {
+
+    private static final long SHOP_ID = 1L;
+
+    @Autowired
+    private IVoucherService voucherService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void stockIsWrittenToRedisAfterCommit() {
+        //1.回滚时不写入Redis
+        Long[] id = new Long[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            id[0] = addSeckillVoucher(100);
+            status.setRollbackOnly();
+        });
+        assertNull(stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + id[0]));
+        //2.提交前Redis中还是旧库存,提交后才是新库存
+        Long voucherId = addSeckillVoucher(100);
+        assertEquals("100", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        transactionTemplate.executeWithoutResult(status -> {
+            voucherService.updateVoucher(stockUpdate(voucherId, 50));
+            assertEquals("100", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+        });
+        assertEquals("50", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+    }
+
+    @Test
+    void updateRequiresAdminToken() {
+        Long voucherId = addSeckillVoucher(100);
+        HttpHeaders headers = new HttpHeaders();
+        ResponseEntity<String> response = restTemplate.exchange("/admin/voucher", HttpMethod.PUT,
+                new HttpEntity<>(stockUpdate(voucherId, 1), headers), String.class);
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        // 旧的匿名接口已移除
+        response = restTemplate.exchange("/voucher", HttpMethod.PUT,
+                new HttpEntity<>(stockUpdate(voucherId, 1), headers), String.class);
+        assertTrue(response.getStatusCode().is4xxClientError());
+        assertEquals("100", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+
+        headers.set("X-Admin-Token", ADMIN_TOKEN);
+        response = restTemplate.exchange("/admin/voucher", HttpMethod.PUT,
+                new HttpEntity<>(stockUpdate(voucherId, 1), headers), String.class);
+        assertTrue(JSONUtil.parseObj(response.getBody()).getBool("success"));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId));
+    }
+
+    @Test
+    void listOverlaysRealtimeStock() {
+        Long voucherId = addSeckillVoucher(100);
+        //1.第一次查询写入缓存
+        assertEquals(100, stockInList(voucherId));
+        //2.秒杀扣减Redis库存后,缓存中的列表不变,返回的库存是实时的
+        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucherId, "7");
+        assertEquals(7, stockInList(voucherId));
+    }
+
+    private Long addSeckillVoucher(int stock) {
+        Voucher voucher = new Voucher();
+        voucher.setShopId(SHOP_ID);
+        voucher.setTitle("测试秒杀券");
+        voucher.setPayValue(8000L);
+        voucher.setActualValue(10000L);
+        voucher.setType(1);
+        voucher.setStatus(1);
+        voucher.setStock(stock);
+        voucher.setBeginTime(LocalDateTime.now().minusDays(1));
+        voucher.setEndTime(LocalDateTime.now().plusDays(1));
+        voucherService.addSeckillVoucher(voucher);
+        return voucher.getId();
+    }
+
+    private static Voucher stockUpdate(Long voucherId, int stock) {
+        Voucher voucher = new Voucher();
+        voucher.setId(voucherId);
+        voucher.setStock(stock);
+        return voucher;
+    }
+
+    private int stockInList(Long voucherId) {
+        String body = restTemplate.getForObject("/voucher/list/" + SHOP_ID, String.class);
+        JSONArray vouchers = JSONUtil.parseObj(body).getJSONArray("data");
+        for (int i = 0; i < vouchers.size(); i++) {
+            JSONObject voucher = vouchers.getJSONObject(i);
+            if (voucherId.equals(voucher.getLong("id"))) {
+                return voucher.getInt("stock");
+            }
+        }
+        throw new AssertionError("优惠券不在列表中: " + voucherId);
+    }
+}
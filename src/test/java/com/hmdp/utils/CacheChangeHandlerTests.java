@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static com.hmdp.utils.FakeChangeEventSource.row;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用内存中的变更来源代替binlog，检查行变更转换成的缓存失效：同一批内合并去重，只改计数、库存的更新不处理
+ */
+class CacheChangeHandlerTests {
+
+    private FakeChangeEventSource source;
+    private List<CacheInvalidation> invalidations;
+    private CacheInvalidator invalidator;
+    private CacheChangeHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        source = new FakeChangeEventSource();
+        invalidations = new ArrayList<>();
+        invalidator = new CacheInvalidator() {
+            @Override
+            public void invalidateFromBinlog(CacheInvalidation invalidation) {
+                invalidations.add(invalidation);
+            }
+        };
+        // 优惠券10属于店铺3
+        handler = new CacheChangeHandler(source, invalidator, voucherId -> voucherId == 10L ? 3L : null, 60_000);
+        handler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.stop();
+        // 停止延迟删除的时间轮
+        invalidator.destroy();
+        assertTrue(source.isStopped());
+    }
+
+    @Test
+    void changesInOneWindowAreMergedAndDeduplicated() {
+        source.update("tb_shop", row("id", 1L, "name", "a"), row("id", 1L, "name", "b"));
+        source.update("tb_shop", row("id", 1L, "name", "b"), row("id", 1L, "name", "c"));
+        source.insert("tb_shop", "id", 2L, "name", "d");
+        source.delete("tb_voucher", "id", 5L, "shop_id", 1L);
+        handler.flush();
+
+        assertEquals(1, invalidations.size());
+        CacheInvalidation batch = invalidations.get(0);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("cache:shop:1", "cache:shop:2", "cache:voucher:shop:1")),
+                batch.getKeys());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("/shop/1", "/shop/2")), batch.getPaths());
+        // 每个节点各自重建这些店铺的搜索索引
+        assertEquals(new LinkedHashSet<>(Arrays.asList(1L, 2L)), batch.getShops());
+
+        // 已执行的不再重复
+        handler.flush();
+        assertEquals(1, invalidations.size());
+    }
+
+    @Test
+    void voucherMovedToAnotherShopInvalidatesBothShops() {
+        source.update("tb_voucher", row("id", 5L, "shop_id", 1L), row("id", 5L, "shop_id", 2L));
+        handler.flush();
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("cache:voucher:shop:1", "cache:voucher:shop:2")),
+                invalidations.get(0).getKeys());
+    }
+
+    @Test
+    void shopTypeChangeInvalidatesTypeList() {
+        source.update("tb_shop_type", row("id", 1L, "name", bytes("a")), row("id", 1L, "name", bytes("b")));
+        handler.flush();
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("cache:shop-type:list")), invalidations.get(0).getKeys());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("/shop-type/list")), invalidations.get(0).getPaths());
+    }
+
+    @Test
+    void commentChangeInvalidatesCommentsOfBlog() {
+        source.insert("tb_blog_comments", "id", 7L, "blog_id", 4L, "content", bytes("c"));
+        source.delete("tb_blog_comments", "id", 8L, "blog_id", 5L, "content", bytes("c"));
+        handler.flush();
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("cache:blog:comments:4", "cache:blog:comments:5")),
+                invalidations.get(0).getKeys());
+    }
+
+    @Test
+    void counterAndStockOnlyUpdatesAreIgnored() {
+        source.update("tb_blog", row("id", 4L, "liked", 1, "title", bytes("t")),
+                row("id", 4L, "liked", 2, "title", bytes("t")));
+        source.update("tb_seckill_voucher", row("voucher_id", 10L, "stock", 100),
+                row("voucher_id", 10L, "stock", 99));
+        handler.flush();
+        assertTrue(invalidations.isEmpty());
+
+        source.update("tb_blog", row("id", 4L, "title", bytes("t")), row("id", 4L, "title", bytes("new")));
+        source.update("tb_seckill_voucher", row("voucher_id", 10L, "stock", 99, "end_time", 1L),
+                row("voucher_id", 10L, "stock", 99, "end_time", 2L));
+        handler.flush();
+
+        assertEquals(1, invalidations.size());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("seckill:time:10", "cache:voucher:shop:3")),
+                invalidations.get(0).getKeys());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("/blog/hot")), invalidations.get(0).getPaths());
+    }
+
+    /**
+     * binlog中的文本列是byte[]
+     */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.hmdp.utils;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VERSION_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 写入缓存前检查版本号(cache-set-if-version.lua)：查询数据库期间数据被修改时，读到的旧数据不写入缓存
+ */
+class CacheClientTests extends IntegrationTestSupport {
+
+    @Autowired
+    private CacheClient cacheClient;
+
+    @Autowired
+    private IShopService shopService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    void loadBatchSkipsShopsModifiedDuringQuery() {
+        List<Long> ids = Arrays.asList(3L, 4L);
+        stringRedisTemplate.delete(Arrays.asList(CACHE_SHOP_KEY + 3, CACHE_SHOP_KEY + 4));
+        //1.预热查询数据库期间,店铺4被修改(版本号增加)
+        Map<Long, Shop> loaded = cacheClient.loadBatch(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, ids, batch -> {
+            Map<Long, Shop> shops = shopService.listByIds(batch).stream()
+                    .collect(Collectors.toMap(Shop::getId, Function.identity()));
+            stringRedisTemplate.opsForValue().increment(CACHE_SHOP_VERSION_KEY + 4);
+            return shops;
+        }, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        assertEquals(2, loaded.size());
+        //2.只有没被修改的店铺写入了缓存
+        assertTrue(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + 3));
+        assertFalse(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + 4));
+        //3.下次加载读到新的版本号,可以写入
+        cacheClient.loadBatch(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, Collections.singletonList(4L),
+                batch -> shopService.listByIds(batch).stream()
+                        .collect(Collectors.toMap(Shop::getId, Function.identity())),
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        assertTrue(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + 4));
+    }
+
+    @Test
+    void passThroughSkipsShopModifiedDuringQuery() {
+        stringRedisTemplate.delete(CACHE_SHOP_KEY + 5);
+        //1.查询数据库期间店铺被修改,返回读到的数据,旧数据不写入缓存
+        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, 5L, Shop.class, id -> {
+            Shop loaded = shopService.getById(id);
+            stringRedisTemplate.opsForValue().increment(CACHE_SHOP_VERSION_KEY + id);
+            return loaded;
+        }, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        assertEquals(5L, shop.getId());
+        assertFalse(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + 5));
+        //2.不存在的数据同样不缓存空值
+        long missing = Long.MAX_VALUE;
+        assertNull(cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, missing, Shop.class, id -> {
+            stringRedisTemplate.opsForValue().increment(CACHE_SHOP_VERSION_KEY + id);
+            return null;
+        }, CACHE_SHOP_TTL, TimeUnit.MINUTES));
+        assertFalse(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + missing));
+        //3.版本号没有变化,正常写入
+        cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, CACHE_SHOP_VERSION_KEY, 5L, Shop.class,
+                shopService::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        assertTrue(stringRedisTemplate.hasKey(CACHE_SHOP_KEY + 5));
+    }
+}
@@ -0,0 +1,139 @@
+package com.hmdp.utils;
+
+import com.hmdp.IntegrationTestSupport;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IShopService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 写回Redis时替换缓冲区不丢失并发的增量；写回数据库后Redis中的增量被删除，数据库中的值不小于0；读取时加上未写回的增量
+ */
+class CounterServiceTests extends IntegrationTestSupport {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 20000;
+
+    @Autowired
+    private CounterService counterService;
+
+    @Autowired
+    private IBlogService blogService;
+
+    @Autowired
+    private IShopService shopService;
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    void concurrentAddsSurviveBufferSwap() throws InterruptedException {
+        Long blogId = createBlog();
+        //1.多个线程累加的同时反复替换缓冲区
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < INCREMENTS; i++) {
+                    counterService.increment(CounterType.BLOG_COMMENTS, blogId);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                counterService.flushToRedis();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        flusher.join();
+        //2.没有增量丢失或重复
+        assertEquals((long) THREADS * INCREMENTS, counterService.pending(CounterType.BLOG_COMMENTS, blogId));
+        //3.写回数据库后增量为0,数据库中是全部增量
+        flushAll(CounterType.BLOG_COMMENTS, blogId);
+        assertEquals(THREADS * INCREMENTS, blogService.getById(blogId).getComments());
+    }
+
+    @Test
+    void flushClampsAtZero() throws InterruptedException {
+        Long blogId = createBlog();
+        counterService.add(CounterType.BLOG_LIKED, blogId, 2);
+        counterService.add(CounterType.BLOG_LIKED, blogId, -5);
+        flushAll(CounterType.BLOG_LIKED, blogId);
+        assertEquals(0, blogService.getById(blogId).getLiked());
+    }
+
+    @Test
+    void shopReadsIncludePendingCounters() throws InterruptedException {
+        Shop shop = shopService.getById(2L);
+        int sold = shop.getSold();
+        counterService.add(CounterType.SHOP_SOLD, shop.getId(), 3);
+        // 缓存中的店铺加上未写回的销量
+        assertEquals(sold + 3, ((Shop) shopService.queryById(shop.getId()).getData()).getSold());
+        // 写回数据库后缓存被删除,不会少算
+        flushAll(CounterType.SHOP_SOLD, shop.getId());
+        assertEquals(sold + 3, shopService.getById(shop.getId()).getSold());
+        assertEquals(sold + 3, ((Shop) shopService.queryById(shop.getId()).getData()).getSold());
+    }
+
+    @Test
+    void likeMissingBlogIsRejected() {
+        UserDTO user = new UserDTO();
+        user.setId(1L);
+        UserHolder.saveUser(user);
+        assertFalse(blogService.likeBlog(Long.MAX_VALUE).getSuccess());
+        assertEquals(0, counterService.pending(CounterType.BLOG_LIKED, Long.MAX_VALUE));
+    }
+
+    /**
+     * 写入Redis再写入数据库，定时任务可能持有写回的锁，重试直到没有未写回的增量
+     */
+    private void flushAll(CounterType type, Long id) throws InterruptedException {
+        counterService.flushToRedis();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (counterService.pending(type, id) != 0 && System.currentTimeMillis() < deadline) {
+            counterService.flushToDb();
+            Thread.sleep(20);
+        }
+        assertEquals(0, counterService.pending(type, id));
+    }
+
+    private Long createBlog() {
+        Blog blog = new Blog();
+        blog.setShopId(1L);
+        blog.setUserId(1L);
+        blog.setTitle("计数器测试");
+        blog.setImages("");
+        blog.setContent("计数器测试");
+        blog.setLiked(0);
+        blog.setComments(0);
+        blogService.save(blog);
+        return blog.getId();
+    }
+}
@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 游标往返编解码；空游标表示第一页；个数不符、不是数字、不是Base64都抛出IllegalArgumentException
+ */
+class CursorUtilsTests {
+
+    @Test
+    void roundTrip() {
+        assertArrayEquals(new long[]{42L}, CursorUtils.decode(CursorUtils.encode(42L), 1));
+        assertArrayEquals(new long[]{0L, Long.MAX_VALUE}, CursorUtils.decode(CursorUtils.encode(0L, Long.MAX_VALUE), 2));
+        assertArrayEquals(new long[]{-1L, 7L}, CursorUtils.decode(CursorUtils.encode(-1L, 7L), 2));
+    }
+
+    @Test
+    void blankCursorIsFirstPage() {
+        assertNull(CursorUtils.decode(null, 2));
+        assertNull(CursorUtils.decode("", 2));
+        assertNull(CursorUtils.decode("  ", 2));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(CursorUtils.encode(1L, 2L), 1));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(CursorUtils.encode(1L), 2));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(Base64.encodeUrlSafe("a:b"), 2));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode("!!!", 2));
+    }
+}
@@ -0,0 +1,51 @@
+package com.hmdp.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 内存中的变更来源，代替binlog，在调用线程中同步投递
+ */
+class FakeChangeEventSource implements ChangeEventSource {
+
+    private Consumer<ChangeEvent> listener;
+    private boolean stopped;
+
+    @Override
+    public void start(Consumer<ChangeEvent> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void insert(String table, Object... columnsAndValues) {
+        listener.accept(new ChangeEvent(table, ChangeEvent.Type.INSERT, null, row(columnsAndValues)));
+    }
+
+    void update(String table, Map<String, Object> before, Map<String, Object> after) {
+        listener.accept(new ChangeEvent(table, ChangeEvent.Type.UPDATE, before, after));
+    }
+
+    void delete(String table, Object... columnsAndValues) {
+        listener.accept(new ChangeEvent(table, ChangeEvent.Type.DELETE, row(columnsAndValues), null));
+    }
+
+    /**
+     * row("id", 1L, "name", "...")
+     */
+    static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+}
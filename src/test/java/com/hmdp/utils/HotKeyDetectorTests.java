@@ -0,0 +1,57 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点在窗口结束时才生效，连续cooldownWindows个窗口没有达到阈值后冷却
+ */
+class HotKeyDetectorTests {
+
+    @Test
+    void keyAboveThresholdBecomesHotAfterWindowAndCoolsDown() {
+        HotKeyDetector detector = new HotKeyDetector(1024, 1, 100, 2, 10);
+        for (int i = 0; i < 1000; i++) {
+            detector.record("cache:shop:1");
+            detector.record("cache:shop:" + (i + 2));
+        }
+        assertFalse(detector.isHot("cache:shop:1"));
+
+        assertEquals(Collections.emptyList(), detector.rotate());
+        assertTrue(detector.isHot("cache:shop:1"));
+        assertEquals(Collections.singletonList("cache:shop:1"), keys(detector.hotKeys()));
+        // count-min sketch只会高估
+        assertTrue(detector.hotKeys().get(0).getCount() >= 1000);
+
+        // 一个窗口没有达到阈值仍是热点,两个窗口后冷却
+        assertEquals(Collections.emptyList(), detector.rotate());
+        assertTrue(detector.isHot("cache:shop:1"));
+        assertEquals(Collections.singletonList("cache:shop:1"), detector.rotate());
+        assertFalse(detector.isHot("cache:shop:1"));
+    }
+
+    @Test
+    void keepsHottestKeysWhenOverLimit() {
+        HotKeyDetector detector = new HotKeyDetector(1024, 1, 10, 2, 2);
+        for (int key = 1; key <= 4; key++) {
+            for (int i = 0; i < key * 100; i++) {
+                detector.record("cache:shop:" + key);
+            }
+        }
+        detector.rotate();
+
+        List<String> hot = keys(detector.hotKeys());
+        assertEquals(2, hot.size());
+        assertEquals("cache:shop:4", hot.get(0));
+        assertEquals("cache:shop:3", hot.get(1));
+    }
+
+    private static List<String> keys(List<HotKeyDetector.HotKey> hotKeys) {
+        return hotKeys.stream().map(HotKeyDetector.HotKey::getKey).collect(Collectors.toList());
+    }
+}
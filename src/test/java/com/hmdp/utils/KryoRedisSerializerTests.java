@@ -0,0 +1,91 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 所有缓存的类型都能往返序列化；结构不一致、长度头错误、数据损坏都抛出SerializationException，由CacheClient当作未命中
+ */
+class KryoRedisSerializerTests {
+
+    private final KryoRedisSerializer raw = new KryoRedisSerializer(0);
+    private final KryoRedisSerializer compressed = new KryoRedisSerializer(16);
+
+    @Test
+    void cachedTypesRoundTrip() {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        shop.setScore(37);
+        shop.setX(120.149192);
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        Voucher voucher = new Voucher();
+        voucher.setId(2L);
+        voucher.setShopId(1L);
+        voucher.setTitle("50元代金券");
+        BlogComments reply = new BlogComments();
+        reply.setId(4L);
+        reply.setReplies(Collections.emptyList());
+        BlogComments comment = new BlogComments();
+        comment.setId(3L);
+        comment.setStatus(false);
+        comment.setReplies(new ArrayList<>(Collections.singletonList(reply)));
+        UserDTO user = new UserDTO();
+        user.setId(5L);
+        user.setNickName("user_slxaxy2au9f3tanffaxr");
+
+        for (Object value : Arrays.asList(shop, new ArrayList<>(Collections.singletonList(voucher)),
+                new ArrayList<>(Collections.singletonList(comment)), user, new ArrayList<>())) {
+            assertEquals(value, raw.deserialize(raw.serialize(value)));
+            assertEquals(value, compressed.deserialize(compressed.serialize(value)));
+        }
+    }
+
+    @Test
+    void unregisteredTypeIsRejected() {
+        assertThrows(SerializationException.class, () -> raw.serialize(new StringBuilder("x")));
+    }
+
+    @Test
+    void corruptedDataIsSerializationException() {
+        List<Shop> shops = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            Shop shop = new Shop();
+            shop.setId(i);
+            shop.setName("店铺");
+            shops.add(shop);
+        }
+        byte[] bytes = compressed.serialize(shops);
+        assertEquals(1, bytes[0]);
+
+        //1.结构指纹不一致
+        byte[] schema = bytes.clone();
+        schema[1] ^= 1;
+        assertThrows(SerializationException.class, () -> compressed.deserialize(schema));
+        //2.长度头为负数或远超压缩数据可能解出的长度
+        byte[] negative = bytes.clone();
+        negative[5] = (byte) 0x80;
+        assertThrows(SerializationException.class, () -> compressed.deserialize(negative));
+        byte[] huge = bytes.clone();
+        huge[5] = 0x7F;
+        assertThrows(SerializationException.class, () -> compressed.deserialize(huge));
+        //3.数据被截断
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(SerializationException.class, () -> compressed.deserialize(truncated));
+        byte[] rawBytes = raw.serialize(shops);
+        assertThrows(SerializationException.class, () -> raw.deserialize(Arrays.copyOf(rawBytes, rawBytes.length / 2)));
+    }
+}
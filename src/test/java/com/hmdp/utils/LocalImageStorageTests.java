@@ -0,0 +1,75 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.io.IoUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 暂存文件在图片目录之外，发布不覆盖已有图片，暂存标识不能指向暂存目录之外的文件
+ */
+class LocalImageStorageTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stagedFileIsOutsideRootUntilPublished() throws IOException {
+        Path root = dir.resolve("imgs");
+        LocalImageStorage storage = new LocalImageStorage(root.toString(), "");
+        //1.暂存文件写入根目录旁的imgs.staging,根目录中没有任何文件
+        String staged = storage.stage(stream("first"));
+        assertTrue(Files.isRegularFile(dir.resolve("imgs.staging").resolve(staged)));
+        assertEquals(0, count(root));
+        //2.发布后可以读取,暂存文件被移走
+        assertTrue(storage.publish(staged, "/blogs/a/b/ab.jpg"));
+        assertEquals(0, count(dir.resolve("imgs.staging")));
+        try (InputStream in = storage.open("/blogs/a/b/ab.jpg")) {
+            assertArrayEquals("first".getBytes(StandardCharsets.UTF_8), IoUtil.readBytes(in));
+        }
+        //3.目标已存在时不覆盖,由调用方丢弃暂存文件
+        String second = storage.stage(stream("second"));
+        assertFalse(storage.publish(second, "/blogs/a/b/ab.jpg"));
+        storage.discard(second);
+        assertEquals(0, count(dir.resolve("imgs.staging")));
+        try (InputStream in = storage.open("/blogs/a/b/ab.jpg")) {
+            assertArrayEquals("first".getBytes(StandardCharsets.UTF_8), IoUtil.readBytes(in));
+        }
+    }
+
+    @Test
+    void stagingMustBeOutsideRoot() throws IOException {
+        Path root = dir.resolve("imgs");
+        assertThrows(IllegalArgumentException.class,
+                () -> new LocalImageStorage(root.toString(), root.resolve(".staging").toString()));
+        LocalImageStorage storage = new LocalImageStorage(root.toString(), dir.resolve("tmp").toString());
+        assertThrows(IllegalArgumentException.class, () -> storage.discard("../imgs/a.jpg"));
+        assertThrows(IllegalArgumentException.class, () -> storage.publish("../x.tmp", "/blogs/a.jpg"));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long count(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 切词、按相关度分页和游标分页；提前停止扫描时的结果与取出全部命中后排序的结果一致
+ */
+class ShopSearchIndexTests {
+
+    @Test
+    void tokenize() {
+        assertEquals(Arrays.asList("10", "03", "3茶", "茶餐", "餐厅"), ShopSearchIndex.tokenize("103茶餐厅"));
+        assertEquals(Arrays.asList("a", "kf", "fc"), ShopSearchIndex.tokenize(" A-KFC!"));
+        assertTrue(ShopSearchIndex.tokenize("  ").isEmpty());
+        assertTrue(ShopSearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void searchRanksByFieldWeight() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.index(shop(1L, "茶餐厅", "大关", "拱墅区"));
+        index.index(shop(2L, "烧烤", "茶园", "拱墅区"));
+        index.index(shop(3L, "火锅", "大关", "茶馆路"));
+        index.index(shop(4L, "茶餐厅", "大关", "拱墅区"));
+        //1.名称命中排在商圈命中之前,商圈命中排在地址命中之前,得分相同按id升序
+        assertEquals(Arrays.asList(1L, 4L, 2L, 3L), index.search("茶", 0, 10));
+        assertEquals(Arrays.asList(4L, 2L), index.search("茶", 1, 2));
+        assertEquals(Collections.emptyList(), index.search("茶", 4, 10));
+        //2.所有词项都要命中
+        assertEquals(Arrays.asList(1L, 4L), index.search("茶餐 大关", 0, 10));
+        assertEquals(Collections.emptyList(), index.search("茶餐 火锅", 0, 10));
+        //3.更新和删除后旧词项不再命中
+        index.index(shop(1L, "面馆", "大关", "拱墅区"));
+        index.remove(4L);
+        assertEquals(Arrays.asList(2L, 3L), index.search("茶", 0, 10));
+        assertEquals(Collections.emptyList(), index.search("餐厅", 0, 10));
+    }
+
+    @Test
+    void earlyStopMatchesFullSort() {
+        //1.少量字符组成的随机店铺,每个词项的倒排链都很长,得分大量相同
+        ShopSearchIndex index = new ShopSearchIndex();
+        Random random = new Random(42);
+        String chars = "茶餐厅火锅烧烤面馆";
+        for (long id = 1; id <= 2000; id++) {
+            index.index(shop(id, random(random, chars, 4), random(random, chars, 2), random(random, chars, 3)));
+        }
+        for (String keyword : Arrays.asList("茶", "茶餐", "火 锅", "茶 面 烤", "烧烤店")) {
+            List<Long> all = index.search(keyword, 0, Integer.MAX_VALUE);
+            //2.按页码分页与完整排序的子列表一致
+            for (int from : new int[]{0, 7, 100}) {
+                int to = Math.min(from + 10, all.size());
+                List<Long> expected = from >= all.size() ? Collections.emptyList() : all.subList(from, to);
+                assertEquals(expected, index.search(keyword, from, 10), keyword + " from " + from);
+            }
+            //3.游标分页依次取完,与完整排序一致
+            List<Long> paged = new ArrayList<>();
+            Integer score = null;
+            Long id = null;
+            while (true) {
+                List<Map.Entry<Long, Integer>> page = index.searchAfter(keyword, score, id, 37);
+                page.forEach(hit -> paged.add(hit.getKey()));
+                if (page.size() < 37) {
+                    break;
+                }
+                score = page.get(page.size() - 1).getValue();
+                id = page.get(page.size() - 1).getKey();
+            }
+            assertEquals(all, paged, keyword);
+        }
+    }
+
+    private static String random(Random random, String chars, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    private static Shop shop(Long id, String name, String area, String address) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName(name);
+        shop.setArea(area);
+        shop.setAddress(address);
+        return shop;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个线程同时加载同一个key时，加载函数只执行一次，所有线程拿到同一个结果或同一个异常
+ */
+class SingleFlightTests {
+
+    private static final int THREADS = 100;
+
+    @Test
+    void concurrentLoadsOfSameKeyRunLoaderOnce() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        Object value = new Object();
+        List<Future<Object>> results = runConcurrently(arrived -> singleFlight.execute("cache:shop:1", () -> {
+            loads.incrementAndGet();
+            // 等所有线程都进入execute之后再返回
+            awaitQuietly(arrived);
+            sleepQuietly(200);
+            return value;
+        }));
+        for (Future<Object> result : results) {
+            assertSame(value, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failureIsSharedAndNextCallReloads() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<Object>> results = runConcurrently(arrived -> singleFlight.execute("cache:shop:1", () -> {
+            loads.incrementAndGet();
+            awaitQuietly(arrived);
+            sleepQuietly(200);
+            throw new IllegalStateException("db down");
+        }));
+        for (Future<Object> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, loads.get());
+        //失败后不保留结果,下一次调用重新加载
+        assertEquals("ok", singleFlight.execute("cache:shop:1", () -> {
+            loads.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        String outer = singleFlight.execute("cache:shop:1",
+                () -> "1" + singleFlight.execute("cache:shop:2", () -> "2"));
+        assertEquals("12", outer);
+    }
+
+    /**
+     * THREADS个线程同时开始调用task，task的参数在所有线程都即将进入execute时归零
+     */
+    private static List<Future<Object>> runConcurrently(Task task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch arrived = new CountDownLatch(THREADS);
+        List<Future<Object>> results = new ArrayList<>(THREADS);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    arrived.countDown();
+                    return task.run(arrived);
+                }));
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Task {
+        Object run(CountDownLatch arrived);
+    }
+}